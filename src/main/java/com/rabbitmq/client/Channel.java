@@ -195,6 +195,27 @@ public interface Channel extends ShutdownNotifier, AutoCloseable {
      */
     void setDefaultConsumer(Consumer consumer);
 
+    /**
+     * Set the share of the connection consumer dispatch this channel gets.
+     *
+     * Channels with pending consumer callbacks are served in turn.
+     * On each turn, a channel runs up to <code>weight</code> times
+     * as many callbacks as a channel with the default weight of 1.
+     * A channel with a higher weight that gets a delivery while idle
+     * is also served ahead of the other channels waiting for their turn.
+     * Giving a higher weight to channels of critical consumers keeps
+     * them from falling behind a flood of deliveries on other channels
+     * of the same connection.
+     *
+     * Callbacks of a given channel are still run one after the other, in order.
+     *
+     * @param weight between 1 and 100
+     * @since 5.3.0
+     */
+    default void setConsumerDispatchWeight(int weight) {
+
+    }
+
     /**
      * Request specific "quality of service" settings.
      *
@@ -1366,6 +1387,10 @@ public interface Channel extends ShutdownNotifier, AutoCloseable {
 
     /**
      * Asynchronously send a method over this channel.
+     * <p>
+     * This method does not wait for the replies of previous requests:
+     * several methods can be pipelined on the same channel, the
+     * futures completing in the order the methods were sent.
      * @param method method to transmit over this channel.
      * @return a completable future that completes when the result is received
      * @throws IOException Problem transmitting method.
@@ -19,6 +19,7 @@ import static java.util.concurrent.TimeUnit.*;
 
 import com.rabbitmq.client.impl.AMQConnection;
 import com.rabbitmq.client.impl.ConnectionParams;
+import com.rabbitmq.client.impl.ConsumerDispatchPool;
 import com.rabbitmq.client.impl.CredentialsProvider;
 import com.rabbitmq.client.impl.DefaultCredentialsProvider;
 import com.rabbitmq.client.impl.DefaultExceptionHandler;
@@ -46,6 +47,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
@@ -174,6 +176,60 @@ public class ConnectionFactory implements Cloneable {
      */
     private int workPoolTimeout = DEFAULT_WORK_POOL_TIMEOUT;
 
+    /**
+     * Whether consumer dispatch runs on virtual threads.
+     * @since 5.3.0
+     */
+    private boolean consumerDispatchOnVirtualThreads = false;
+
+    /**
+     * Pool of threads shared by the connections to dispatch consumer callbacks.
+     * @since 5.3.0
+     */
+    private ConsumerDispatchPool consumerDispatchPool;
+
+    /**
+     * Whether channels with too much pending consumer work are throttled.
+     * @since 5.3.0
+     */
+    private boolean consumerBackPressure = false;
+
+    /**
+     * Executor to decode channel frames off the connection thread.
+     * @since 5.3.0
+     */
+    private ExecutorService frameDecodingExecutor;
+
+    /**
+     * Executor to recover the topology of several channels concurrently.
+     * @since 5.3.0
+     */
+    private ExecutorService topologyRecoveryExecutor;
+
+    /**
+     * Time in milliseconds allowed to recover the topology, 0 means no limit.
+     * @since 5.3.0
+     */
+    private int topologyRecoveryDeadline = 0;
+
+    /**
+     * Queues to recover before the others.
+     * @since 5.3.0
+     */
+    private Predicate<String> topologyRecoveryPriority;
+
+    /**
+     * Whether recovering connections keep a standby connection open.
+     * @since 5.3.0
+     */
+    private boolean standbyConnectionEnabled = false;
+
+    /**
+     * Limits the rate of reconnection attempts, can be shared between factories.
+     * @since 5.3.0
+     */
+    private RecoveryAttemptLimiter recoveryAttemptLimiter;
+
     /** @return the default host to use for connections */
     public String getHost() {
         return host;
@@ -563,6 +619,8 @@ public class ConnectionFactory implements Cloneable {
     /**
      * Set the executor to use for connection shutdown.
      * All connections that use this executor share it.
+     * The channels of a connection are shut down in parallel
+     * on this executor.
      *
      * It's developer's responsibility to shut down the executor
      * when it is no longer needed.
@@ -1046,6 +1104,15 @@ public class ConnectionFactory implements Cloneable {
         result.setChannelRpcTimeout(channelRpcTimeout);
         result.setChannelShouldCheckRpcResponseType(channelShouldCheckRpcResponseType);
         result.setWorkPoolTimeout(workPoolTimeout);
+        result.setConsumerDispatchOnVirtualThreads(consumerDispatchOnVirtualThreads);
+        result.setConsumerDispatchPool(consumerDispatchPool);
+        result.setConsumerBackPressure(consumerBackPressure);
+        result.setFrameDecodingExecutor(frameDecodingExecutor);
+        result.setTopologyRecoveryExecutor(topologyRecoveryExecutor);
+        result.setTopologyRecoveryDeadline(topologyRecoveryDeadline);
+        result.setTopologyRecoveryPriority(topologyRecoveryPriority);
+        result.setStandbyConnectionEnabled(standbyConnectionEnabled);
+        result.setRecoveryAttemptLimiter(recoveryAttemptLimiter);
         result.setErrorOnWriteListener(errorOnWriteListener);
         return result;
     }
@@ -1384,6 +1451,248 @@ public class ConnectionFactory implements Cloneable {
         return workPoolTimeout;
     }
 
+    /**
+     * Dispatch consumer callbacks on virtual threads (Java 21 or more).
+     * By default, each connection dispatches on a pool of
+     * 2 * number of cores platform threads, so consumers that
+     * make blocking calls (JDBC, HTTP, etc) can stall the dispatch
+     * of the other channels. With this setting enabled, each
+     * channel work block runs on its own virtual thread: a blocked
+     * consumer only holds back its own channel. Callbacks for a given
+     * channel are still executed one after the other, in order.
+     * <p>
+     * Falls back to the pool of platform threads on JVMs
+     * that do not support virtual threads.
+     * Has no effect for connections created with an executor
+     * (see {@link #setSharedExecutor(ExecutorService)}).
+     * Default is false.
+     *
+     * @param consumerDispatchOnVirtualThreads true to use virtual threads
+     * @since 5.3.0
+     */
+    public void setConsumerDispatchOnVirtualThreads(boolean consumerDispatchOnVirtualThreads) {
+        this.consumerDispatchOnVirtualThreads = consumerDispatchOnVirtualThreads;
+    }
+
+    public boolean isConsumerDispatchOnVirtualThreads() {
+        return consumerDispatchOnVirtualThreads;
+    }
+
+    /**
+     * Set the pool of threads to dispatch consumer callbacks of newly created connections.
+     * By default, each connection creates its own pool of 2 * number of cores threads,
+     * which adds up to many idle threads with many connections. Connections
+     * share the threads of the {@link ConsumerDispatchPool}, each connection
+     * using at most its quota of them at a time, and are served in turn
+     * when the pool is busy.
+     * <p>
+     * Has no effect for connections created with an executor
+     * (see {@link #setSharedExecutor(ExecutorService)}).
+     * It's developer's responsibility to close the pool
+     * when it is no longer needed.
+     *
+     * @param consumerDispatchPool the pool to use
+     * @see ConsumerDispatchPool
+     * @since 5.3.0
+     */
+    public void setConsumerDispatchPool(ConsumerDispatchPool consumerDispatchPool) {
+        this.consumerDispatchPool = consumerDispatchPool;
+    }
+
+    public ConsumerDispatchPool getConsumerDispatchPool() {
+        return consumerDispatchPool;
+    }
+
+    /**
+     * Throttle channels that have too much pending consumer work
+     * instead of blocking the connection.
+     * By default, when consumers of a channel cannot keep up, the
+     * {@link com.rabbitmq.client.impl.WorkPool} eventually blocks the
+     * connection thread (see {@link #setWorkPoolTimeout(int)}), which
+     * stops reading frames for all the channels of the connection.
+     * With back-pressure enabled, the work queues are not bounded:
+     * when a channel has more than 1000 pending callbacks, its channel-wide
+     * prefetch count (<code>basic.qos</code> with <code>global</code> set to true)
+     * is lowered until its consumers catch up, and the other channels
+     * are not affected.
+     * <p>
+     * This relies on consumers acknowledging messages manually:
+     * the prefetch count has no effect in automatic acknowledgement mode.
+     * Default is false.
+     *
+     * @param consumerBackPressure true to throttle channels
+     * @since 5.3.0
+     */
+    public void setConsumerBackPressure(boolean consumerBackPressure) {
+        this.consumerBackPressure = consumerBackPressure;
+    }
+
+    public boolean isConsumerBackPressure() {
+        return consumerBackPressure;
+    }
+
+    /**
+     * Set the executor to decode channel frames with.
+     * <p>
+     * By default, the connection thread reads the frames, decodes them,
+     * assembles the commands and hands them to the channels, one frame at a time.
+     * With this executor set, the connection thread only reads the frames and
+     * the rest of the work is done on the executor threads. Frames of a given
+     * channel are still processed one at a time and in order, but different channels
+     * are processed in parallel, which helps connections with many busy channels.
+     * <p>
+     * This also means a channel whose consumer work queue is full
+     * (see {@link #setWorkPoolTimeout(int)}) blocks one executor thread
+     * instead of the connection thread, so the other channels keep
+     * receiving their frames.
+     * <p>
+     * The executor can be shared between connections. It is not shut down
+     * by the connections, it is the responsibility of the application to
+     * shut it down once the connections are closed.
+     * Default is null (frames are decoded on the connection thread).
+     *
+     * @param frameDecodingExecutor executor to decode channel frames with
+     * @since 5.3.0
+     */
+    public void setFrameDecodingExecutor(ExecutorService frameDecodingExecutor) {
+        this.frameDecodingExecutor = frameDecodingExecutor;
+    }
+
+    public ExecutorService getFrameDecodingExecutor() {
+        return frameDecodingExecutor;
+    }
+
+    /**
+     * Set the executor to recover the topology with.
+     * <p>
+     * By default, exchanges, queues, bindings and consumers are recovered
+     * one after the other on the recovery thread, each with a round trip to
+     * the broker. With this executor set, the entities declared on different
+     * channels are recovered concurrently, the parallelism being that of the executor.
+     * The entities of a given channel are still recovered in order, and each
+     * kind of entities is fully recovered before the next one, so that e.g.
+     * bindings and consumers use the new name of server-named queues.
+     * <p>
+     * Recovery listeners and the exception handler can then be called
+     * from several threads at the same time.
+     * <p>
+     * The executor can be shared between connections. It is not shut down
+     * by the connections.
+     * Default is null (topology recovered on the recovery thread).
+     *
+     * @param topologyRecoveryExecutor executor to recover the topology with
+     * @see #setTopologyRecoveryEnabled(boolean)
+     * @since 5.3.0
+     */
+    public void setTopologyRecoveryExecutor(ExecutorService topologyRecoveryExecutor) {
+        this.topologyRecoveryExecutor = topologyRecoveryExecutor;
+    }
+
+    public ExecutorService getTopologyRecoveryExecutor() {
+        return topologyRecoveryExecutor;
+    }
+
+    /**
+     * Set the time allowed to recover the topology, measured from the moment
+     * the connection is back (channel recovery included, reconnection
+     * attempts excluded).
+     * <p>
+     * Queues, bindings and consumers that are not recovered when the deadline
+     * is exceeded are skipped, so that the application gets its connection back
+     * in a bounded time. Each skipped entity is reported to
+     * {@link ExceptionHandler#handleTopologyRecoveryException(Connection, Channel, TopologyRecoveryException)}.
+     * The application is responsible for declaring the skipped entities again:
+     * they stay recorded, but they are recovered only if the connection fails again. Exchanges and the queues selected with
+     * {@link #setTopologyRecoveryPriority(Predicate)} are always recovered.
+     * Default is 0 (no deadline).
+     *
+     * @param topologyRecoveryDeadline time in milliseconds, 0 for no deadline
+     * @see RecoveryListener#handleRecoveryPhase(Recoverable, RecoveryPhase, int, long)
+     * @since 5.3.0
+     */
+    public void setTopologyRecoveryDeadline(int topologyRecoveryDeadline) {
+        if (topologyRecoveryDeadline < 0) {
+            throw new IllegalArgumentException("Topology recovery deadline cannot be negative");
+        }
+        this.topologyRecoveryDeadline = topologyRecoveryDeadline;
+    }
+
+    public int getTopologyRecoveryDeadline() {
+        return topologyRecoveryDeadline;
+    }
+
+    /**
+     * Set the queues to recover first.
+     * <p>
+     * The queues the predicate accepts (based on their name before recovery),
+     * their bindings and their consumers are recovered right after the exchanges,
+     * before the other queues. They are not subject to the
+     * {@link #setTopologyRecoveryDeadline(int) topology recovery deadline}.
+     * Default is null (queues recovered in the order they were declared).
+     *
+     * @param criticalQueues predicate on queue names
+     * @since 5.3.0
+     */
+    public void setTopologyRecoveryPriority(Predicate<String> criticalQueues) {
+        this.topologyRecoveryPriority = criticalQueues;
+    }
+
+    public Predicate<String> getTopologyRecoveryPriority() {
+        return topologyRecoveryPriority;
+    }
+
+    /**
+     * Enables or disables standby connections for automatic recovery.
+     * <p>
+     * With this option enabled, each recovering connection keeps a second
+     * connection open in the background, to another address of the list
+     * when there are several. When the connection fails, recovery
+     * uses the standby connection right away, without the initial recovery delay
+     * and without waiting for a new connection to be established
+     * (TCP, TLS and AMQP handshakes), then recovers channels and topology on it.
+     * A new standby connection is then opened.
+     * <p>
+     * The standby connection is checked every few seconds and re-opened if
+     * it is closed. If it is not available when the connection fails, recovery
+     * proceeds as usual.
+     * <p>
+     * This doubles the number of connections to the cluster.
+     * This option has no effect if automatic recovery is disabled.
+     * Default is false.
+     *
+     * @param standbyConnectionEnabled true to keep a standby connection open
+     * @see #setAutomaticRecoveryEnabled(boolean)
+     * @since 5.3.0
+     */
+    public void setStandbyConnectionEnabled(boolean standbyConnectionEnabled) {
+        this.standbyConnectionEnabled = standbyConnectionEnabled;
+    }
+
+    public boolean isStandbyConnectionEnabled() {
+        return standbyConnectionEnabled;
+    }
+
+    /**
+     * Set the limiter of reconnection attempts for automatic recovery.
+     * <p>
+     * Each reconnection attempt of automatic recovery then waits for a
+     * token of the limiter, after the delay of the {@link RecoveryDelayHandler}.
+     * Use the same limiter for all the connection factories of the application
+     * to limit the reconnection rate of the whole process.
+     * Default is null (no limit).
+     *
+     * @param recoveryAttemptLimiter limiter shared by the recovering connections
+     * @see #setRecoveryDelayHandler(RecoveryDelayHandler)
+     * @since 5.3.0
+     */
+    public void setRecoveryAttemptLimiter(RecoveryAttemptLimiter recoveryAttemptLimiter) {
+        this.recoveryAttemptLimiter = recoveryAttemptLimiter;
+    }
+
+    public RecoveryAttemptLimiter getRecoveryAttemptLimiter() {
+        return recoveryAttemptLimiter;
+    }
+
     /**
      * Set a listener to be called when connection gets an IO error trying to write on the socket.
      * Default listener triggers connection recovery asynchronously and propagates
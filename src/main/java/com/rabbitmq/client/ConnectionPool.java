@@ -0,0 +1,389 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of connections that leases their channels.
+ * <p>
+ * Opening a channel takes a round trip to the broker, which is costly for
+ * short units of work (e.g. publishing a message while handling a request).
+ * The pool keeps channels open and hands them out with {@link #lease(long, TimeUnit)}:
+ * <pre>
+ * try (ConnectionPool.Lease lease = pool.lease(5, TimeUnit.SECONDS)) {
+ *     lease.getChannel().basicPublish("", "my-queue", null, body);
+ * }
+ * </pre>
+ * The pool has a fixed number of connections, opened when the pool is created,
+ * and opens up to a given number of channels on each of them, on demand. Closing
+ * a lease returns its channel to the pool. When all the channels are leased,
+ * {@link #lease(long, TimeUnit)} waits for one to be returned.
+ * <p>
+ * Channels that are closed (e.g. because of a channel error) are discarded,
+ * and so are channels left idle for longer than the idle timeout, if any.
+ * Connections that are closed and do not recover automatically are re-opened
+ * when a channel is needed. In confirm mode, all the channels of the pool are in
+ * publisher confirm mode (see {@link Channel#confirmSelect()}).
+ * <p>
+ * The confirm and return listeners of a channel are cleared when it is returned
+ * to the pool. Leased channels are meant for publishing and synchronous
+ * operations: consumers must be cancelled before closing the lease.
+ * <p>
+ * Lease wait times and the number of leased channels are reported to the
+ * {@link MetricsCollector} of the connection factory.
+ *
+ * @since 5.3.0
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final ConnectionFactory factory;
+    private final int channelsPerConnection;
+    private final boolean confirmMode;
+    private final long idleTimeoutInNanos;
+    private final MetricsCollector metricsCollector;
+
+    private final PooledConnection[] connections;
+    /** Idle channels, most recently returned first */
+    private final Deque<PooledChannel> idle = new ConcurrentLinkedDeque<PooledChannel>();
+    /** One permit per channel that can be leased */
+    private final Semaphore available;
+    private final AtomicInteger leased = new AtomicInteger(0);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * Create a pool without confirm mode nor idle timeout.
+     * @param factory factory to open the connections with
+     * @param connections number of connections
+     * @param channelsPerConnection maximum number of channels on each connection
+     * @throws IOException if a connection cannot be opened
+     * @throws TimeoutException if a connection cannot be opened in time
+     */
+    public ConnectionPool(ConnectionFactory factory, int connections, int channelsPerConnection)
+        throws IOException, TimeoutException {
+        this(factory, connections, channelsPerConnection, false, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a pool.
+     * @param factory factory to open the connections with
+     * @param connections number of connections
+     * @param channelsPerConnection maximum number of channels on each connection
+     * @param confirmMode whether the channels are in publisher confirm mode
+     * @param idleTimeout time after which an idle channel is closed, 0 to keep idle channels open
+     * @param unit unit of the idle timeout
+     * @throws IOException if a connection cannot be opened
+     * @throws TimeoutException if a connection cannot be opened in time
+     */
+    public ConnectionPool(ConnectionFactory factory, int connections, int channelsPerConnection,
+                          boolean confirmMode, long idleTimeout, TimeUnit unit)
+        throws IOException, TimeoutException {
+        if (connections <= 0 || channelsPerConnection <= 0) {
+            throw new IllegalArgumentException("Number of connections and channels must be positive");
+        }
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout cannot be negative");
+        }
+        this.factory = factory;
+        this.channelsPerConnection = channelsPerConnection;
+        this.confirmMode = confirmMode;
+        this.idleTimeoutInNanos = unit.toNanos(idleTimeout);
+        this.metricsCollector = factory.getMetricsCollector() == null ?
+            new NoOpMetricsCollector() : factory.getMetricsCollector();
+        this.available = new Semaphore(connections * channelsPerConnection, true);
+        this.connections = new PooledConnection[connections];
+        try {
+            for (int i = 0; i < connections; i++) {
+                this.connections[i] = new PooledConnection(factory.newConnection());
+            }
+        } catch (IOException | TimeoutException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lease a channel, waiting for one to be returned if they are all leased.
+     * @param timeout how long to wait for a channel
+     * @param unit unit of the timeout
+     * @return the lease, to close once done with the channel
+     * @throws IOException if a channel or a connection cannot be opened
+     * @throws TimeoutException if no channel is returned in time
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the pool is closed
+     */
+    public Lease lease(long timeout, TimeUnit unit) throws IOException, TimeoutException, InterruptedException {
+        checkNotClosed();
+        long start = System.nanoTime();
+        if (!this.available.tryAcquire(timeout, unit)) {
+            throw new TimeoutException("No channel available after " + timeout + " " + unit);
+        }
+        try {
+            checkNotClosed();
+            PooledChannel channel;
+            do {
+                // the permit guarantees either room for a new channel or an idle one
+                channel = takeIdleChannel();
+                if (channel == null) {
+                    channel = openChannel();
+                }
+            } while (channel == null);
+            long waited = System.nanoTime() - start;
+            this.leased.incrementAndGet();
+            this.metricsCollector.channelLeased(channel.channel, waited);
+            return new Lease(channel);
+        } catch (IOException | RuntimeException e) {
+            this.available.release();
+            throw e;
+        }
+    }
+
+    private PooledChannel takeIdleChannel() {
+        long now = System.nanoTime();
+        PooledChannel channel;
+        while ((channel = this.idle.pollFirst()) != null) {
+            if (channel.channel.isOpen() && !isIdleTooLong(channel, now)) {
+                return channel;
+            }
+            discard(channel);
+        }
+        return null;
+    }
+
+    /**
+     * Open a channel on the least loaded connection.
+     * @return the channel, null if all the connections are full
+     */
+    private PooledChannel openChannel() throws IOException {
+        List<PooledConnection> candidates = new ArrayList<PooledConnection>(this.connections.length);
+        Collections.addAll(candidates, this.connections);
+        candidates.sort((c1, c2) -> Integer.compare(c1.channels.get(), c2.channels.get()));
+        IOException lastException = null;
+        for (PooledConnection connection : candidates) {
+            if (connection.channels.incrementAndGet() > this.channelsPerConnection) {
+                connection.channels.decrementAndGet();
+                continue;
+            }
+            try {
+                Channel channel = connection.connection().createChannel();
+                if (channel == null) {
+                    throw new IOException("No channel number available on connection " + connection.connection());
+                }
+                if (this.confirmMode) {
+                    channel.confirmSelect();
+                }
+                return new PooledChannel(connection, channel);
+            } catch (IOException | ShutdownSignalException e) {
+                connection.channels.decrementAndGet();
+                lastException = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+        }
+        if (lastException != null) {
+            throw lastException;
+        }
+        return null;
+    }
+
+    private void release(PooledChannel channel) {
+        this.leased.decrementAndGet();
+        this.metricsCollector.channelReleased(channel.channel);
+        if (this.closed.get() || !channel.channel.isOpen()) {
+            discard(channel);
+        } else {
+            channel.channel.clearConfirmListeners();
+            channel.channel.clearReturnListeners();
+            channel.releasedAt = System.nanoTime();
+            this.idle.offerFirst(channel);
+            evictIdleChannels(channel.releasedAt);
+            if (this.closed.get() && this.idle.remove(channel)) {
+                // the pool was closed in the meantime
+                discard(channel);
+            }
+        }
+        this.available.release();
+    }
+
+    private void evictIdleChannels(long now) {
+        if (this.idleTimeoutInNanos == 0) {
+            return;
+        }
+        PooledChannel oldest;
+        while ((oldest = this.idle.peekLast()) != null && isIdleTooLong(oldest, now)) {
+            if (this.idle.removeLastOccurrence(oldest)) {
+                discard(oldest);
+            }
+        }
+    }
+
+    private boolean isIdleTooLong(PooledChannel channel, long now) {
+        return this.idleTimeoutInNanos > 0 && now - channel.releasedAt > this.idleTimeoutInNanos;
+    }
+
+    private void discard(PooledChannel channel) {
+        channel.connection.channels.decrementAndGet();
+        if (channel.channel.isOpen()) {
+            try {
+                channel.channel.close();
+            } catch (Exception e) {
+                LOGGER.debug("Error while closing pooled channel: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void checkNotClosed() {
+        if (this.closed.get()) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+    }
+
+    /**
+     * @return the number of channels currently leased
+     */
+    public int getLeasedChannelCount() {
+        return this.leased.get();
+    }
+
+    /**
+     * @return the number of open channels waiting to be leased
+     */
+    public int getIdleChannelCount() {
+        return this.idle.size();
+    }
+
+    /**
+     * @return the maximum number of channels that can be leased at the same time
+     */
+    public int getCapacity() {
+        return this.connections.length * this.channelsPerConnection;
+    }
+
+    /**
+     * Close the connections of the pool.
+     * Leased channels are closed with their connection.
+     */
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true)) {
+            this.idle.clear();
+            for (PooledConnection connection : this.connections) {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * A leased channel. Close the lease to return the channel to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final PooledChannel channel;
+        private final AtomicBoolean returned = new AtomicBoolean(false);
+
+        private Lease(PooledChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return the leased channel, not to be used once the lease is closed
+         */
+        public Channel getChannel() {
+            return this.channel.channel;
+        }
+
+        /**
+         * Return the channel to the pool. Can be called several times.
+         */
+        @Override
+        public void close() {
+            if (this.returned.compareAndSet(false, true)) {
+                release(this.channel);
+            }
+        }
+    }
+
+    private static final class PooledChannel {
+
+        private final PooledConnection connection;
+        private final Channel channel;
+        private volatile long releasedAt;
+
+        private PooledChannel(PooledConnection connection, Channel channel) {
+            this.connection = connection;
+            this.channel = channel;
+        }
+    }
+
+    private final class PooledConnection {
+
+        private volatile Connection connection;
+        /** Open channels, leased or idle */
+        private final AtomicInteger channels = new AtomicInteger(0);
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * The connection, re-opened if it is closed for good.
+         */
+        private Connection connection() throws IOException {
+            Connection current = this.connection;
+            if (current.isOpen() || current instanceof Recoverable && !isClosedByApplication(current)) {
+                return current;
+            }
+            synchronized (this) {
+                if (this.connection == current) {
+                    try {
+                        this.connection = factory.newConnection();
+                    } catch (TimeoutException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return this.connection;
+            }
+        }
+
+        private boolean isClosedByApplication(Connection connection) {
+            ShutdownSignalException cause = connection.getCloseReason();
+            return cause != null && cause.isInitiatedByApplication();
+        }
+
+        private void close() {
+            try {
+                this.connection.close();
+            } catch (Exception e) {
+                LOGGER.debug("Error while closing pooled connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client;
+
+/**
+ * Marker interface for {@link Consumer}s whose callbacks are run directly
+ * on the thread reading from the connection, instead of being handed over
+ * to a dispatch thread.
+ * <p>
+ * This saves a thread handoff per message and is meant for latency-critical
+ * consumers with very short callbacks, e.g. market data feeds. The trade-offs
+ * are significant:
+ * <ul>
+ *     <li>the connection does not read any frame while a callback is running,
+ *     so a slow callback delays all the channels of the connection
+ *     and can even make the connection miss heartbeats. Callbacks taking
+ *     longer than a few milliseconds are logged as warnings.</li>
+ *     <li>callbacks must not call blocking {@link Channel} methods (e.g.
+ *     {@link Channel#queueDeclare()} or {@link Channel#waitForConfirms()}),
+ *     as the reply could never be read. Such calls fail with an
+ *     {@link IllegalStateException} instead of deadlocking the connection.
+ *     Asynchronous methods like {@link Channel#basicAck(long, boolean)} are fine.</li>
+ *     <li>callbacks are not serialized with the callbacks of other, non-inline
+ *     consumers of the same channel. Use a dedicated channel for inline
+ *     consumers if this matters.</li>
+ * </ul>
+ *
+ * @see Consumer
+ * @since 5.3.0
+ */
+public interface InlineDispatchConsumer extends Consumer {
+
+}
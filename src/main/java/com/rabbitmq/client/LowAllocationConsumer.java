@@ -0,0 +1,58 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client;
+
+import java.io.IOException;
+
+/**
+ * {@link Consumer} that receives the delivery fields unpacked instead of
+ * wrapped in an {@link Envelope}.
+ * <p>
+ * When a consumer registered with one of the {@link Channel#basicConsume}
+ * methods implements this interface, deliveries are dispatched to
+ * {@link #handleDelivery(String, long, boolean, String, String, AMQP.BasicProperties, byte[])}
+ * and {@link Consumer#handleDelivery(String, Envelope, AMQP.BasicProperties, byte[])}
+ * is never called. This saves an allocation per message on the consume path,
+ * which matters for high-throughput consumers.
+ * <p>
+ * Most implementations will subclass {@link DefaultConsumer} and implement this
+ * interface on top of it.
+ *
+ * @see Consumer
+ * @since 5.3.0
+ */
+public interface LowAllocationConsumer extends Consumer {
+
+    /**
+     * Called when a <code><b>basic.deliver</b></code> is received for this consumer.
+     * @param consumerTag the <i>consumer tag</i> associated with the consumer
+     * @param deliveryTag the delivery tag, to use to acknowledge the message
+     * @param redelivered true if this is a redelivery following a failed ack
+     * @param exchange the exchange the message was published to
+     * @param routingKey the routing key used when the message was published
+     * @param properties content header data for the message
+     * @param body the message body (opaque, client-specific byte array)
+     * @throws IOException if the consumer encounters an I/O error while processing the message
+     */
+    void handleDelivery(String consumerTag,
+                        long deliveryTag,
+                        boolean redelivered,
+                        String exchange,
+                        String routingKey,
+                        AMQP.BasicProperties properties,
+                        byte[] body)
+        throws IOException;
+}
@@ -52,4 +52,53 @@ public interface MetricsCollector {
 
     void basicCancel(Channel channel, String consumerTag);
 
+    /**
+     * Called when a step of automatic connection recovery has completed.
+     * Default implementation does nothing.
+     * @param connection the recovering connection
+     * @param phase the recovery step
+     * @param entities number of recovered entities (channels, queues, etc)
+     * @param durationInNanoseconds time spent in this step
+     * @see RecoveryListener#handleRecoveryPhase(Recoverable, RecoveryPhase, int, long)
+     * @since 5.3.0
+     */
+    default void recoveryPhase(Connection connection, RecoveryPhase phase, int entities, long durationInNanoseconds) {
+
+    }
+
+    /**
+     * Called when a channel is leased from a {@link ConnectionPool}.
+     * Default implementation does nothing.
+     * @param channel the leased channel
+     * @param waitTimeInNanoseconds time spent waiting for the channel
+     * @since 5.3.0
+     */
+    default void channelLeased(Channel channel, long waitTimeInNanoseconds) {
+
+    }
+
+    /**
+     * Called when a channel leased from a {@link ConnectionPool} is returned.
+     * Default implementation does nothing.
+     * @param channel the returned channel
+     * @since 5.3.0
+     */
+    default void channelReleased(Channel channel) {
+
+    }
+
+    /**
+     * Called when the adaptive prefetch controller of a channel
+     * changes the prefetch count of the channel.
+     * Default implementation does nothing.
+     * @param channel the channel
+     * @param previousPrefetch prefetch count before the change
+     * @param prefetch new prefetch count
+     * @see com.rabbitmq.client.impl.PrefetchController
+     * @since 5.3.0
+     */
+    default void prefetchChanged(Channel channel, int previousPrefetch, int prefetch) {
+
+    }
+
 }
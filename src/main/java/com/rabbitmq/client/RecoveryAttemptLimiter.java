@@ -0,0 +1,87 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits the rate of reconnection attempts of automatic recovery.
+ * <p>
+ * Each reconnection attempt takes a token, tokens are added at a fixed rate,
+ * up to a maximum that allows short bursts. An attempt waits when there is
+ * no token left. Share the same instance between {@link ConnectionFactory}s
+ * to apply the limit to all the connections of the JVM, e.g. to avoid
+ * thousands of connections reconnecting to a node at the same time
+ * after it restarts.
+ * <p>
+ * Waiting attempts are served in order.
+ *
+ * @see ConnectionFactory#setRecoveryAttemptLimiter(RecoveryAttemptLimiter)
+ * @see RecoveryDelayHandler
+ * @since 5.3.0
+ */
+public class RecoveryAttemptLimiter {
+
+    private final long nanosPerToken;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param attemptsPerSecond rate at which tokens are added
+     * @param burst maximum number of tokens, i.e. attempts that can go without waiting
+     * @throws IllegalArgumentException if the rate or the burst are not positive
+     */
+    public RecoveryAttemptLimiter(double attemptsPerSecond, int burst) {
+        if (attemptsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / attemptsPerSecond);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take a token, waiting for it if necessary.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (double) (now - lastRefill) / nanosPerToken);
+            lastRefill = now;
+            // tokens can go negative: this reserves the next tokens,
+            // so callers are served in the order they arrived
+            tokens -= 1;
+            wait = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * @return the number of attempts that can currently go without waiting
+     */
+    public synchronized int availableTokens() {
+        long now = System.nanoTime();
+        double available = Math.min(burst, tokens + (double) (now - lastRefill) / nanosPerToken);
+        return available <= 0 ? 0 : (int) available;
+    }
+}
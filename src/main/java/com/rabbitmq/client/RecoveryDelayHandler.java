@@ -18,6 +18,7 @@ package com.rabbitmq.client;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A RecoveryDelayHandler is used to tell automatic recovery how long to sleep between reconnect attempts.
@@ -91,4 +92,89 @@ public interface RecoveryDelayHandler {
             return sequence.get(recoveryAttempts >= sequence.size() ? sequence.size() - 1 : recoveryAttempts);
         }
     }
+
+    /**
+     * Backoff implementation of {@link RecoveryDelayHandler} with "full jitter": the delay is picked at random
+     * between 0 and an exponentially growing ceiling (<code>min(cap, base * 2^attempts)</code>).
+     * <p>
+     * Connections that fail at the same time (e.g. when a node restarts) then spread
+     * their reconnection attempts instead of hitting the node all at once.
+     *
+     * @since 5.3.0
+     */
+    class FullJitterBackoffDelayHandler implements RecoveryDelayHandler {
+
+        private final long base;
+        private final long cap;
+
+        /**
+         * @param base
+         *          ceiling of the first delay, in milliseconds
+         * @param cap
+         *          maximum delay, in milliseconds
+         * @throws IllegalArgumentException if base is not positive or cap is lower than base
+         */
+        public FullJitterBackoffDelayHandler(final long base, final long cap) {
+            if (base <= 0 || cap < base)
+                throw new IllegalArgumentException("base must be positive and not greater than cap");
+            this.base = base;
+            this.cap = cap;
+        }
+
+        @Override
+        public long getDelay(int recoveryAttempts) {
+            return ThreadLocalRandom.current().nextLong(ceiling(base, cap, recoveryAttempts) + 1);
+        }
+
+        private static long ceiling(long base, long cap, int recoveryAttempts) {
+            // base * 2^attempts, without overflowing
+            int shift = Math.min(recoveryAttempts, 62);
+            return base > (cap >> shift) ? cap : Math.min(cap, base << shift);
+        }
+    }
+
+    /**
+     * Backoff implementation of {@link RecoveryDelayHandler} with "decorrelated jitter": each delay is picked at random
+     * between the base delay and three times the previous delay, up to a cap.
+     * <p>
+     * The first delay is between the base delay and three times the base delay.
+     * Delays grow about as fast as with an exponential backoff, but connections that fail
+     * at the same time quickly drift apart. The previous delay is tracked per recovering thread,
+     * so an instance can be shared by several connections. It is reset when a recovery starts
+     * (<code>recoveryAttempts</code> is 0).
+     *
+     * @since 5.3.0
+     */
+    class DecorrelatedJitterBackoffDelayHandler implements RecoveryDelayHandler {
+
+        private final long base;
+        private final long cap;
+        private final ThreadLocal<Long> previousDelay = new ThreadLocal<Long>();
+
+        /**
+         * @param base
+         *          minimum delay, in milliseconds
+         * @param cap
+         *          maximum delay, in milliseconds
+         * @throws IllegalArgumentException if base is not positive or cap is lower than base
+         */
+        public DecorrelatedJitterBackoffDelayHandler(final long base, final long cap) {
+            if (base <= 0 || cap < base)
+                throw new IllegalArgumentException("base must be positive and not greater than cap");
+            this.base = base;
+            this.cap = cap;
+        }
+
+        @Override
+        public long getDelay(int recoveryAttempts) {
+            Long previous = recoveryAttempts == 0 ? null : previousDelay.get();
+            if (previous == null) {
+                previous = base;
+            }
+            long upper = previous > cap / 3 ? cap : previous * 3;
+            long delay = upper <= base ? base : base + ThreadLocalRandom.current().nextLong(upper - base + 1);
+            previousDelay.set(delay);
+            return delay;
+        }
+    }
 }
\ No newline at end of file
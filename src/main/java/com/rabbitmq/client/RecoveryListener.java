@@ -36,4 +36,22 @@ public interface RecoveryListener {
      * @param recoverable a {@link Recoverable} connection.
      */
     void handleRecoveryStarted(Recoverable recoverable);
+
+    /**
+     * Invoked when a step of automatic connection recovery has completed.
+     * <p>
+     * Topology recovery steps are reported only if topology recovery is enabled.
+     * Each step is reported once, also when some queues are recovered first
+     * (see {@link ConnectionFactory#setTopologyRecoveryPriority(java.util.function.Predicate)}).
+     * <p>
+     * Default implementation does nothing.
+     * @param recoverable a {@link Recoverable} connection.
+     * @param phase the recovery step
+     * @param entities number of recovered entities (channels, queues, etc), 0 for {@link RecoveryPhase#CONNECTION}
+     * @param durationInNanoseconds time spent in this step
+     * @since 5.3.0
+     */
+    default void handleRecoveryPhase(Recoverable recoverable, RecoveryPhase phase, int entities, long durationInNanoseconds) {
+
+    }
 }
@@ -0,0 +1,36 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client;
+
+/**
+ * Steps of automatic connection recovery, in the order they happen.
+ *
+ * @see RecoveryListener#handleRecoveryPhase(Recoverable, RecoveryPhase, int, long)
+ * @see MetricsCollector#recoveryPhase(Connection, RecoveryPhase, int, long)
+ * @since 5.3.0
+ */
+public enum RecoveryPhase {
+
+    /** Re-establishing the connection, including the failed attempts. */
+    CONNECTION,
+    /** Re-opening the channels and restoring their state. */
+    CHANNELS,
+    EXCHANGES,
+    QUEUES,
+    BINDINGS,
+    CONSUMERS
+
+}
@@ -0,0 +1,263 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publisher that spreads messages over several connections.
+ * <p>
+ * A connection has one socket and one reader thread, which limits how
+ * fast a single publisher can go. This class opens a fixed number of
+ * connections ("stripes"), each with one channel in publisher confirm
+ * mode, and picks the stripe of a message from its routing key with
+ * consistent hashing. Messages with the same routing key always go
+ * through the same channel, so they keep their relative order.
+ * <pre>
+ * try (StripedPublisher publisher = new StripedPublisher(factory, addresses, 4)) {
+ *     publisher.basicPublish("orders", "order." + customerId, null, body);
+ *     ...
+ *     publisher.waitForConfirmsOrDie(5000);
+ * }
+ * </pre>
+ * Each stripe gets the address list rotated by its index, so stripes
+ * prefer different nodes when connections use the addresses in order
+ * (that is, without automatic recovery, which shuffles the addresses).
+ * <p>
+ * Publishing is thread-safe: publishes on the same stripe are serialized.
+ * The {@code waitForConfirms} methods combine the confirms of all the stripes.
+ * Use {@link #getStripe(String)} and {@link #getChannel(int)} to register
+ * a {@link ConfirmListener} on a given stripe.
+ *
+ * @since 5.3.0
+ */
+public class StripedPublisher implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedPublisher.class);
+
+    /** Points on the hash ring per stripe, to even out the distribution of routing keys */
+    private static final int VIRTUAL_NODES_PER_STRIPE = 64;
+
+    private final Connection[] connections;
+    private final Channel[] channels;
+    private final TreeMap<Integer, Integer> ring = new TreeMap<Integer, Integer>();
+
+    /**
+     * Create a publisher with connections to the given addresses.
+     * @param factory factory to open the connections with
+     * @param addresses addresses to connect to
+     * @param stripes number of connections
+     * @throws IOException if a connection cannot be opened
+     * @throws TimeoutException if a connection cannot be opened in time
+     */
+    public StripedPublisher(ConnectionFactory factory, List<Address> addresses, int stripes)
+        throws IOException, TimeoutException {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Number of stripes must be positive");
+        }
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("At least one address is required");
+        }
+        this.connections = new Connection[stripes];
+        this.channels = new Channel[stripes];
+        try {
+            for (int i = 0; i < stripes; i++) {
+                List<Address> preferred = new ArrayList<Address>(addresses);
+                Collections.rotate(preferred, -(i % addresses.size()));
+                this.connections[i] = factory.newConnection(preferred, "striped-publisher-" + i);
+                this.channels[i] = this.connections[i].createChannel();
+                this.channels[i].confirmSelect();
+            }
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        for (int i = 0; i < stripes; i++) {
+            for (int j = 0; j < VIRTUAL_NODES_PER_STRIPE; j++) {
+                this.ring.putIfAbsent(hash("stripe-" + i + "-" + j), i);
+            }
+        }
+    }
+
+    /**
+     * Create a publisher with connections to the addresses of the resolver.
+     * @param factory factory to open the connections with
+     * @param addressResolver resolver for the addresses to connect to
+     * @param stripes number of connections
+     * @throws IOException if the addresses cannot be resolved or a connection cannot be opened
+     * @throws TimeoutException if a connection cannot be opened in time
+     */
+    public StripedPublisher(ConnectionFactory factory, AddressResolver addressResolver, int stripes)
+        throws IOException, TimeoutException {
+        this(factory, addressResolver.getAddresses(), stripes);
+    }
+
+    /**
+     * @param routingKey the routing key of a message
+     * @return the index of the stripe messages with this routing key are published on
+     */
+    public int getStripe(String routingKey) {
+        Map.Entry<Integer, Integer> point = this.ring.ceilingEntry(hash(routingKey));
+        return point == null ? this.ring.firstEntry().getValue() : point.getValue();
+    }
+
+    /**
+     * @param stripe index of the stripe
+     * @return the channel of the stripe
+     */
+    public Channel getChannel(int stripe) {
+        return this.channels[stripe];
+    }
+
+    public int getStripeCount() {
+        return this.channels.length;
+    }
+
+    /**
+     * Publish a message on the stripe of its routing key.
+     * @see Channel#basicPublish(String, String, AMQP.BasicProperties, byte[])
+     */
+    public void basicPublish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body)
+        throws IOException {
+        basicPublish(exchange, routingKey, false, props, body);
+    }
+
+    /**
+     * Publish a message on the stripe of its routing key.
+     * @see Channel#basicPublish(String, String, boolean, AMQP.BasicProperties, byte[])
+     */
+    public void basicPublish(String exchange, String routingKey, boolean mandatory,
+                             AMQP.BasicProperties props, byte[] body) throws IOException {
+        Channel channel = this.channels[getStripe(routingKey)];
+        synchronized (channel) {
+            channel.basicPublish(exchange, routingKey, mandatory, props, body);
+        }
+    }
+
+    /**
+     * Wait until all the messages published on all the stripes since the last
+     * call have been either ack'd or nack'd by the broker.
+     * @return whether all the messages were ack'd (and none were nack'd)
+     * @throws InterruptedException if interrupted while waiting
+     * @see Channel#waitForConfirms()
+     */
+    public boolean waitForConfirms() throws InterruptedException {
+        boolean onlyAcks = true;
+        for (Channel channel : this.channels) {
+            // wait on every stripe, to reset the state of all the channels
+            onlyAcks &= channel.waitForConfirms();
+        }
+        return onlyAcks;
+    }
+
+    /**
+     * Wait until all the messages published on all the stripes since the last
+     * call have been either ack'd or nack'd by the broker; or until timeout elapses.
+     * @param timeout time in milliseconds to wait for all the stripes, 0 for no timeout
+     * @return whether all the messages were ack'd (and none were nack'd)
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if not all the confirms arrived in time
+     * @see Channel#waitForConfirms(long)
+     */
+    public boolean waitForConfirms(long timeout) throws InterruptedException, TimeoutException {
+        if (timeout == 0) {
+            // no timeout, as for a channel
+            return waitForConfirms();
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        boolean onlyAcks = true;
+        TimeoutException timeoutException = null;
+        for (Channel channel : this.channels) {
+            // wait on every stripe, even after a timeout, to reset the state of all the channels
+            try {
+                // 0 means no timeout for the channel
+                onlyAcks &= channel.waitForConfirms(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (TimeoutException e) {
+                if (timeoutException == null) {
+                    timeoutException = e;
+                }
+            }
+        }
+        if (timeoutException != null) {
+            throw timeoutException;
+        }
+        return onlyAcks;
+    }
+
+    /**
+     * Wait until all the messages published on all the stripes since the last
+     * call have been either ack'd or nack'd by the broker.
+     * @throws IOException if a message was nack'd
+     * @throws InterruptedException if interrupted while waiting
+     * @see Channel#waitForConfirmsOrDie()
+     */
+    public void waitForConfirmsOrDie() throws IOException, InterruptedException {
+        if (!waitForConfirms()) {
+            throw new IOException("nacks received");
+        }
+    }
+
+    /**
+     * Wait until all the messages published on all the stripes since the last
+     * call have been either ack'd or nack'd by the broker; or until timeout elapses.
+     * @param timeout time in milliseconds to wait for all the stripes, 0 for no timeout
+     * @throws IOException if a message was nack'd
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if not all the confirms arrived in time
+     * @see Channel#waitForConfirmsOrDie(long)
+     */
+    public void waitForConfirmsOrDie(long timeout) throws IOException, InterruptedException, TimeoutException {
+        if (!waitForConfirms(timeout)) {
+            throw new IOException("nacks received");
+        }
+    }
+
+    /**
+     * Close all the connections.
+     */
+    @Override
+    public void close() {
+        for (Connection connection : this.connections) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                    LOGGER.debug("Error while closing striped publisher connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // see MurmurHash3 fmix32, spreads similar routing keys over the ring
+    private static int hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
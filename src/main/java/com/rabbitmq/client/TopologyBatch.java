@@ -0,0 +1,232 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects exchange, queue and binding declarations and sends them
+ * on a channel in one go.
+ * <p>
+ * The declarations are pipelined with {@link Channel#asyncCompletableRpc(Method)}:
+ * all the methods are written to the channel without waiting for the
+ * replies, which are then collected in order. Declaring a large topology
+ * thus costs roughly one round trip instead of one per entity.
+ * <p>
+ * As usual with AMQP, a failing declaration closes the channel: the
+ * corresponding {@link Result} carries the error and the subsequent
+ * declarations are reported as failed as well.
+ * <p>
+ * Instances are not thread-safe and are meant to be executed once.
+ * <pre>
+ * List&lt;TopologyBatch.Result&gt; results = new TopologyBatch(channel)
+ *     .exchangeDeclare("logs", BuiltinExchangeType.TOPIC, true, false, null)
+ *     .queueDeclare("logs.errors", true, false, false, null)
+ *     .queueBind("logs.errors", "logs", "*.error", null)
+ *     .execute();
+ * </pre>
+ *
+ * @since 5.3.0
+ */
+public class TopologyBatch {
+
+    private final Channel channel;
+
+    private final List<Method> declarations = new ArrayList<Method>();
+
+    public TopologyBatch(Channel channel) {
+        this.channel = channel;
+    }
+
+    public TopologyBatch exchangeDeclare(String exchange, String type, boolean durable, boolean autoDelete,
+                                         boolean internal, Map<String, Object> arguments) {
+        return add(new AMQP.Exchange.Declare.Builder()
+            .exchange(exchange)
+            .type(type)
+            .durable(durable)
+            .autoDelete(autoDelete)
+            .internal(internal)
+            .arguments(arguments)
+            .build());
+    }
+
+    public TopologyBatch exchangeDeclare(String exchange, String type, boolean durable, boolean autoDelete,
+                                         Map<String, Object> arguments) {
+        return exchangeDeclare(exchange, type, durable, autoDelete, false, arguments);
+    }
+
+    public TopologyBatch exchangeDeclare(String exchange, BuiltinExchangeType type, boolean durable, boolean autoDelete,
+                                         Map<String, Object> arguments) {
+        return exchangeDeclare(exchange, type.getType(), durable, autoDelete, false, arguments);
+    }
+
+    public TopologyBatch queueDeclare(String queue, boolean durable, boolean exclusive, boolean autoDelete,
+                                      Map<String, Object> arguments) {
+        if (queue.length() > 255) {
+            throw new IllegalArgumentException("queue name must be no more than 255 characters long");
+        }
+        return add(new AMQP.Queue.Declare.Builder()
+            .queue(queue)
+            .durable(durable)
+            .exclusive(exclusive)
+            .autoDelete(autoDelete)
+            .arguments(arguments)
+            .build());
+    }
+
+    public TopologyBatch queueBind(String queue, String exchange, String routingKey, Map<String, Object> arguments) {
+        return add(new AMQP.Queue.Bind.Builder()
+            .queue(queue)
+            .exchange(exchange)
+            .routingKey(routingKey)
+            .arguments(arguments)
+            .build());
+    }
+
+    public TopologyBatch exchangeBind(String destination, String source, String routingKey, Map<String, Object> arguments) {
+        return add(new AMQP.Exchange.Bind.Builder()
+            .destination(destination)
+            .source(source)
+            .routingKey(routingKey)
+            .arguments(arguments)
+            .build());
+    }
+
+    private TopologyBatch add(Method declaration) {
+        this.declarations.add(declaration);
+        return this;
+    }
+
+    /**
+     * @return the number of declarations in this batch
+     */
+    public int size() {
+        return this.declarations.size();
+    }
+
+    /**
+     * Sends all the declarations and waits for their replies.
+     * @return one result per declaration, in the order they were added
+     * @throws InterruptedException if interrupted while waiting for the replies
+     */
+    public List<Result> execute() throws InterruptedException {
+        try {
+            return execute(0);
+        } catch (TimeoutException e) {
+            // cannot happen without timeout
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sends all the declarations and waits for their replies.
+     * @param timeout time in milliseconds to wait for all the replies, 0 means no timeout
+     * @return one result per declaration, in the order they were added
+     * @throws InterruptedException if interrupted while waiting for the replies
+     * @throws TimeoutException if not all the replies arrived in time
+     */
+    public List<Result> execute(long timeout) throws InterruptedException, TimeoutException {
+        List<CompletableFuture<Command>> replies = new ArrayList<CompletableFuture<Command>>(this.declarations.size());
+        for (Method declaration : this.declarations) {
+            CompletableFuture<Command> reply;
+            try {
+                reply = this.channel.asyncCompletableRpc(declaration);
+            } catch (IOException | ShutdownSignalException e) {
+                // e.g. the channel was closed by an earlier declaration
+                reply = new CompletableFuture<Command>();
+                reply.completeExceptionally(e);
+            }
+            replies.add(reply);
+        }
+
+        long deadline = System.currentTimeMillis() + timeout;
+        List<Result> results = new ArrayList<Result>(this.declarations.size());
+        for (int i = 0; i < this.declarations.size(); i++) {
+            CompletableFuture<Command> reply = replies.get(i);
+            try {
+                Command command;
+                if (timeout == 0) {
+                    command = reply.get();
+                } else {
+                    command = reply.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+                results.add(new Result(this.declarations.get(i), command.getMethod(), null));
+            } catch (ExecutionException e) {
+                results.add(new Result(this.declarations.get(i), null, e.getCause()));
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Outcome of a declaration: either the reply of the broker
+     * or the error that made it fail.
+     */
+    public static class Result {
+
+        private final Method declaration;
+        private final Method reply;
+        private final Throwable error;
+
+        public Result(Method declaration, Method reply, Throwable error) {
+            this.declaration = declaration;
+            this.reply = reply;
+            this.error = error;
+        }
+
+        /**
+         * @return the declaration method that was sent
+         */
+        public Method getDeclaration() {
+            return declaration;
+        }
+
+        /**
+         * @return the reply of the broker (e.g. {@link AMQP.Queue.DeclareOk}), null if the declaration failed
+         */
+        public Method getReply() {
+            return reply;
+        }
+
+        /**
+         * @return the error, usually a {@link ShutdownSignalException}, null if the declaration succeeded
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                "declaration=" + declaration +
+                ", reply=" + reply +
+                ", error=" + error +
+                '}';
+        }
+    }
+}
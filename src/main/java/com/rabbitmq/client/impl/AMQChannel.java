@@ -28,6 +28,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
@@ -64,8 +66,19 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
     /** Command being assembled */
     private AMQCommand _command = new AMQCommand();
 
-    /** The current outstanding RPC request, if any. (Could become a queue in future.) */
-    private RpcWrapper _activeRpc = null;
+    /**
+     * Lane of this channel in the {@link FrameDecodingPipeline}, if any.
+     * Only accessed by the connection thread.
+     */
+    FrameDecodingPipeline.Lane frameLane;
+
+    /**
+     * The outstanding RPC requests, in the order they were sent. The broker
+     * replies to synchronous methods in order, so the head of the queue is
+     * always the continuation the next reply is meant for. Guarded by
+     * {@link #_channelMutex}.
+     */
+    private final Deque<RpcWrapper> _pendingRpcs = new ArrayDeque<RpcWrapper>();
 
     /** Whether transmission of content-bearing methods should be blocked */
     public volatile boolean _blockContent = false;
@@ -182,7 +195,8 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
             if (_checkRpcResponseType) {
                 synchronized (_channelMutex) {
                     // check if this reply command is intended for the current waiting request before calling nextOutstandingRpc()
-                    if (_activeRpc != null && !_activeRpc.canHandleReply(command)) {
+                    RpcWrapper headRpc = _pendingRpcs.peek();
+                    if (headRpc != null && !headRpc.canHandleReply(command)) {
                         // this reply command is not intended for the current waiting request
                         // most likely a previous request timed out and this command is the reply for that.
                         // Throw this reply command away so we don't stop the current request from waiting for its reply
@@ -193,7 +207,10 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
             final RpcWrapper nextOutstandingRpc = nextOutstandingRpc();
             // the outstanding RPC can be null when calling Channel#asyncRpc
             if(nextOutstandingRpc != null) {
-                nextOutstandingRpc.complete(command);
+                // the late reply of a timed out RPC is dropped
+                if (!isAbandoned(nextOutstandingRpc)) {
+                    nextOutstandingRpc.complete(command);
+                }
                 markRpcFinished();
             }
         }
@@ -208,44 +225,78 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
         doEnqueueRpc(() -> new CompletableFutureRpcWrapper(method, future));
     }
 
+    /**
+     * Appends a continuation to the RPC pipeline. Callers do not wait for
+     * earlier RPCs to complete: several requests can be in flight on the
+     * channel, each reply being matched with the continuation at the head of
+     * the pipeline.
+     */
     private void doEnqueueRpc(Supplier<RpcWrapper> rpcWrapperSupplier) {
         synchronized (_channelMutex) {
-            boolean waitClearedInterruptStatus = false;
-            while (_activeRpc != null) {
-                try {
-                    _channelMutex.wait();
-                } catch (InterruptedException e) {
-                    waitClearedInterruptStatus = true;
-                }
-            }
-            if (waitClearedInterruptStatus) {
-                Thread.currentThread().interrupt();
-            }
-            _activeRpc = rpcWrapperSupplier.get();
+            _pendingRpcs.add(rpcWrapperSupplier.get());
         }
     }
 
     public boolean isOutstandingRpc()
     {
         synchronized (_channelMutex) {
-            return (_activeRpc != null);
+            return !_pendingRpcs.isEmpty();
+        }
+    }
+
+    /**
+     * @return the number of RPCs sent on this channel and still waiting for a reply
+     */
+    public int getOutstandingRpcCount() {
+        synchronized (_channelMutex) {
+            return _pendingRpcs.size();
         }
     }
 
     public RpcWrapper nextOutstandingRpc()
     {
         synchronized (_channelMutex) {
-            RpcWrapper result = _activeRpc;
-            _activeRpc = null;
-            _channelMutex.notifyAll();
-            return result;
+            return _pendingRpcs.poll();
+        }
+    }
+
+    /**
+     * Marks the given continuation as abandoned, e.g. after it timed out.
+     * It stays in the RPC pipeline, as its reply is still to come and must
+     * not be taken by a later request: the reply is dropped when it arrives.
+     */
+    private void abandonOutstandingRpc(RpcContinuation k) {
+        synchronized (_channelMutex) {
+            for (RpcWrapper rpc : _pendingRpcs) {
+                if (rpc instanceof RpcContinuationRpcWrapper &&
+                    ((RpcContinuationRpcWrapper) rpc).getContinuation() == k) {
+                    ((RpcContinuationRpcWrapper) rpc).abandon();
+                    return;
+                }
+            }
         }
     }
 
+    private static boolean isAbandoned(RpcWrapper rpc) {
+        return rpc instanceof RpcContinuationRpcWrapper && ((RpcContinuationRpcWrapper) rpc).isAbandoned();
+    }
+
     protected void markRpcFinished() {
         // no-op
     }
 
+    /**
+     * Blocking operations cannot be called from an inline consumer callback:
+     * the thread that would read the reply is the one waiting for it.
+     * @param operation name of the blocking operation, for the error message
+     */
+    protected void ensureNotDispatchingInline(String operation) {
+        if (ConsumerDispatcher.isDispatchingInline()) {
+            throw new IllegalStateException("Cannot call blocking operation " + operation +
+                " from an inline consumer callback, this would deadlock the connection");
+        }
+    }
+
     public void ensureIsOpen()
         throws AlreadyClosedException
     {
@@ -287,24 +338,23 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
             try {
                 return k.getReply(_rpcTimeout);
             } catch (TimeoutException e) {
-                throw wrapTimeoutException(m, e);
+                throw wrapTimeoutException(m, k, e);
             }
         }
     }
     
-    private void cleanRpcChannelState() {
+    private void cleanRpcChannelState(RpcContinuation k) {
         try {
-            // clean RPC channel state
-            nextOutstandingRpc();
-            markRpcFinished();
+            // clean RPC channel state, the RPC is finished once its reply arrives
+            abandonOutstandingRpc(k);
         } catch (Exception ex) {
             LOGGER.warn("Error while cleaning timed out channel RPC: {}", ex.getMessage());
         }
     }
     
     /** Cleans RPC channel state after a timeout and wraps the TimeoutException in a ChannelContinuationTimeoutException */
-    protected ChannelContinuationTimeoutException wrapTimeoutException(final Method m, final TimeoutException e)  {
-        cleanRpcChannelState();
+    protected ChannelContinuationTimeoutException wrapTimeoutException(final Method m, final RpcContinuation k, final TimeoutException e)  {
+        cleanRpcChannelState(k);
         return new ChannelContinuationTimeoutException(e, this, this._channelNumber, m);
     }
 
@@ -324,7 +374,7 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
         try {
             return k.getReply(timeout);
         } catch (TimeoutException e) {
-            cleanRpcChannelState();
+            cleanRpcChannelState(k);
             throw e;
         }
     }
@@ -332,6 +382,7 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
     public void rpc(Method m, RpcContinuation k)
         throws IOException
     {
+        ensureNotDispatchingInline(m.protocolMethodName());
         synchronized (_channelMutex) {
             ensureIsOpen();
             quiescingRpc(m, k);
@@ -405,8 +456,8 @@ public abstract class AMQChannel extends ShutdownNotifierComponent {
     }
 
     public void notifyOutstandingRpc(ShutdownSignalException signal) {
-        RpcWrapper k = nextOutstandingRpc();
-        if (k != null) {
+        RpcWrapper k;
+        while ((k = nextOutstandingRpc()) != null) {
             k.shutdown(signal);
         }
     }
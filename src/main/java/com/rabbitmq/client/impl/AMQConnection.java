@@ -66,6 +66,14 @@ public class AMQConnection extends ShutdownNotifierComponent implements Connecti
 
     private final int workPoolTimeout;
 
+    private final boolean consumerDispatchOnVirtualThreads;
+
+    private final ConsumerDispatchPool consumerDispatchPool;
+
+    private final boolean consumerBackPressure;
+
+    private final FrameDecodingPipeline frameDecodingPipeline;
+
     private final AtomicBoolean finalShutdownStarted = new AtomicBoolean(false);
 
     /**
@@ -254,10 +262,16 @@ public class AMQConnection extends ShutdownNotifierComponent implements Connecti
         this.errorOnWriteListener = params.getErrorOnWriteListener() != null ? params.getErrorOnWriteListener() :
             (connection, exception) -> { throw exception; }; // we just propagate the exception for non-recoverable connections
         this.workPoolTimeout = params.getWorkPoolTimeout();
+        this.consumerDispatchOnVirtualThreads = params.isConsumerDispatchOnVirtualThreads();
+        this.consumerDispatchPool = params.getConsumerDispatchPool();
+        this.consumerBackPressure = params.isConsumerBackPressure();
+        this.frameDecodingPipeline = params.getFrameDecodingExecutor() == null ? null :
+            new FrameDecodingPipeline(this, params.getFrameDecodingExecutor());
     }
 
     private void initializeConsumerWorkService() {
-        this._workService  = new ConsumerWorkService(consumerWorkServiceExecutor, threadFactory, workPoolTimeout, shutdownTimeout);
+        this._workService  = new ConsumerWorkService(consumerWorkServiceExecutor, threadFactory, workPoolTimeout, shutdownTimeout,
+            consumerDispatchOnVirtualThreads, consumerDispatchPool, consumerBackPressure);
     }
 
     private void initializeHeartbeatSender() {
@@ -667,7 +681,11 @@ public class AMQConnection extends ShutdownNotifierComponent implements Connecti
                                 LOGGER.info("Received a frame on an unknown channel, ignoring it");
                                 return;
                             }
-                            channel.handleFrame(frame);
+                            if (frameDecodingPipeline == null) {
+                                channel.handleFrame(frame);
+                            } else {
+                                frameDecodingPipeline.handleFrame(channel, frame);
+                            }
                         }
                     }
                 }
@@ -738,6 +756,10 @@ public class AMQConnection extends ShutdownNotifierComponent implements Connecti
         return Thread.currentThread() != this.mainLoopThread;
     }
 
+    boolean inMainLoopThread() {
+        return Thread.currentThread() == this.mainLoopThread;
+    }
+
     private boolean mainLoopReadThreadNotNull() {
         return this.mainLoopThread != null;
     }
@@ -143,6 +143,42 @@ public abstract class AbstractMetricsCollector implements MetricsCollector {
         }
     }
 
+    @Override
+    public void recoveryPhase(Connection connection, RecoveryPhase phase, int entities, long durationInNanoseconds) {
+        try {
+            markRecoveryPhase(phase, durationInNanoseconds);
+        } catch(Exception e) {
+            LOGGER.info("Error while computing metrics in recoveryPhase: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void channelLeased(Channel channel, long waitTimeInNanoseconds) {
+        try {
+            markChannelLeased(waitTimeInNanoseconds);
+        } catch(Exception e) {
+            LOGGER.info("Error while computing metrics in channelLeased: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void channelReleased(Channel channel) {
+        try {
+            markChannelReleased();
+        } catch(Exception e) {
+            LOGGER.info("Error while computing metrics in channelReleased: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void prefetchChanged(Channel channel, int previousPrefetch, int prefetch) {
+        try {
+            markPrefetchChanged(previousPrefetch, prefetch);
+        } catch(Exception e) {
+            LOGGER.info("Error while computing metrics in prefetchChanged: " + e.getMessage());
+        }
+    }
+
     @Override
     public void consumedMessage(Channel channel, long deliveryTag, boolean autoAck) {
         try {
@@ -360,6 +396,47 @@ public abstract class AbstractMetricsCollector implements MetricsCollector {
      */
     protected abstract void markRejectedMessage();
 
+    /**
+     * Marks the duration of a step of automatic connection recovery.
+     * Does nothing by default.
+     * @param phase the recovery step
+     * @param durationInNanoseconds time spent in this step
+     * @since 5.3.0
+     */
+    protected void markRecoveryPhase(RecoveryPhase phase, long durationInNanoseconds) {
+
+    }
+
+    /**
+     * Marks the lease of a pooled channel.
+     * Does nothing by default.
+     * @param waitTimeInNanoseconds time spent waiting for the channel
+     * @since 5.3.0
+     */
+    protected void markChannelLeased(long waitTimeInNanoseconds) {
+
+    }
+
+    /**
+     * Marks the return of a pooled channel.
+     * Does nothing by default.
+     * @since 5.3.0
+     */
+    protected void markChannelReleased() {
+
+    }
+
+    /**
+     * Marks a change of the prefetch count by the adaptive prefetch controller.
+     * Does nothing by default.
+     * @param previousPrefetch prefetch count before the change
+     * @param prefetch new prefetch count
+     * @since 5.3.0
+     */
+    protected void markPrefetchChanged(int previousPrefetch, int prefetch) {
+
+    }
+
 
 
 }
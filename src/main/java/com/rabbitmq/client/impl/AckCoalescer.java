@@ -0,0 +1,244 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import com.rabbitmq.client.impl.AMQImpl.Basic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the acknowledgements of a channel into <code>basic.ack</code>
+ * with <code>multiple</code> set.
+ * <p>
+ * Acknowledged delivery tags are marked in a bitset. Once the lowest delivery
+ * tags are all settled (acknowledged, rejected or nacked), they form a contiguous
+ * prefix that a single <code>basic.ack</code> with <code>multiple</code> set
+ * covers, up to its highest tag not sent yet. Acknowledgements are sent once <code>maxBatchSize</code> of them are
+ * pending or <code>maxDelay</code> after the first of them, whichever comes first.
+ * Pending acknowledgements beyond the prefix are then sent one by one.
+ * <p>
+ * Pending acknowledgements are sent before any <code>basic.nack</code>,
+ * <code>basic.reject</code> or <code>basic.ack</code> with <code>multiple</code>
+ * set from the application, so these keep their ordering and requeue semantics.
+ * <p>
+ * The bitset covers {@link #WINDOW} delivery tags from the lowest unsettled one.
+ * If a delivery tag stays unsettled for longer (e.g. a delivery to a consumer in
+ * automatic acknowledgement mode on the same channel), coalescing is turned off.
+ *
+ * @since 5.3.0
+ */
+final class AckCoalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AckCoalescer.class);
+
+    static final int WINDOW = 1 << 16;
+    private static final int MASK = WINDOW - 1;
+
+    private final AMQChannel channel;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService scheduler;
+
+    /** Settled delivery tags from {@link #base}, in a ring. */
+    private final long[] settled = new long[WINDOW / Long.SIZE];
+    /** Delivery tags from {@link #base} acknowledged but not sent yet, in a ring. */
+    private final long[] pending = new long[WINDOW / Long.SIZE];
+    /** Lowest unsettled delivery tag, all the tags below are settled. */
+    private long base = 1;
+    /** Highest settled delivery tag. */
+    private long highest = 0;
+    /**
+     * Highest delivery tag below {@link #base} acknowledged but not sent yet, 0 if none.
+     * Tags of the prefix above it were already sent (e.g. in an earlier flush), so
+     * the <code>basic.ack</code> with <code>multiple</code> set must stop at this one:
+     * the broker rejects a delivery tag that has already been acknowledged.
+     */
+    private long prefixTag = 0;
+    private int pendingCount = 0;
+    private boolean flushScheduled = false;
+    private boolean disabled = false;
+
+    private final Runnable scheduledFlush = () -> {
+        synchronized (AckCoalescer.this) {
+            this.flushScheduled = false;
+            flushQuietly();
+        }
+    };
+
+    AckCoalescer(AMQChannel channel, int maxBatchSize, long maxDelay, TimeUnit unit,
+                 ScheduledExecutorService scheduler) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + maxBatchSize);
+        }
+        this.channel = channel;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.scheduler = scheduler == null ? DefaultScheduler.INSTANCE : scheduler;
+    }
+
+    synchronized void ack(long deliveryTag, boolean multiple) throws IOException {
+        if (this.disabled || multiple || deliveryTag < this.base) {
+            flush();
+            this.channel.transmit(new Basic.Ack(deliveryTag, multiple));
+            if (multiple) {
+                settledThrough(deliveryTag);
+            }
+            return;
+        }
+        if (deliveryTag - this.base >= WINDOW) {
+            LOGGER.warn("Delivery tag {} still not settled after {} deliveries, " +
+                "turning off acknowledgement coalescing on channel {}", this.base, WINDOW, this.channel.getChannelNumber());
+            flush();
+            this.disabled = true;
+            this.channel.transmit(new Basic.Ack(deliveryTag, false));
+            return;
+        }
+        set(this.settled, deliveryTag);
+        set(this.pending, deliveryTag);
+        this.highest = Math.max(this.highest, deliveryTag);
+        this.pendingCount++;
+        advance();
+        if (this.pendingCount >= this.maxBatchSize) {
+            flush();
+        } else if (!this.flushScheduled) {
+            this.flushScheduled = true;
+            this.scheduler.schedule(this.scheduledFlush, this.maxDelayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    synchronized void nack(long deliveryTag, boolean multiple, boolean requeue) throws IOException {
+        flush();
+        this.channel.transmit(new Basic.Nack(deliveryTag, multiple, requeue));
+        if (multiple) {
+            settledThrough(deliveryTag);
+        } else {
+            settled(deliveryTag);
+        }
+    }
+
+    synchronized void reject(long deliveryTag, boolean requeue) throws IOException {
+        flush();
+        this.channel.transmit(new Basic.Reject(deliveryTag, requeue));
+        settled(deliveryTag);
+    }
+
+    /**
+     * Sends the pending acknowledgements.
+     */
+    synchronized void flush() throws IOException {
+        if (this.pendingCount == 0) {
+            return;
+        }
+        try {
+            if (this.prefixTag > 0) {
+                this.channel.transmit(new Basic.Ack(this.prefixTag, true));
+            }
+            for (long tag = this.base; tag <= this.highest; tag++) {
+                if (isSet(this.pending, tag)) {
+                    clear(this.pending, tag);
+                    this.channel.transmit(new Basic.Ack(tag, false));
+                }
+            }
+        } finally {
+            // not sent if the channel is closed, the messages will be redelivered
+            this.prefixTag = 0;
+            this.pendingCount = 0;
+        }
+    }
+
+    /**
+     * Sends the pending acknowledgements, logging failures.
+     */
+    synchronized void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not send acknowledgements on channel {}: {}", this.channel.getChannelNumber(), e.getMessage());
+        }
+    }
+
+    private void settled(long deliveryTag) {
+        if (this.disabled || deliveryTag < this.base || deliveryTag - this.base >= WINDOW) {
+            return;
+        }
+        set(this.settled, deliveryTag);
+        this.highest = Math.max(this.highest, deliveryTag);
+        advance();
+    }
+
+    private void settledThrough(long deliveryTag) {
+        if (this.disabled || deliveryTag < this.base) {
+            return;
+        }
+        // called after a flush, there is nothing pending
+        if (deliveryTag - this.base >= WINDOW) {
+            Arrays.fill(this.settled, 0L);
+            Arrays.fill(this.pending, 0L);
+        } else {
+            for (long tag = this.base; tag <= deliveryTag; tag++) {
+                clear(this.settled, tag);
+                clear(this.pending, tag);
+            }
+        }
+        this.base = deliveryTag + 1;
+        this.highest = Math.max(this.highest, deliveryTag);
+        advance();
+    }
+
+    /** Moves the base past the settled delivery tags. */
+    private void advance() {
+        while (this.base <= this.highest && isSet(this.settled, this.base)) {
+            if (isSet(this.pending, this.base)) {
+                this.prefixTag = this.base;
+                clear(this.pending, this.base);
+            }
+            clear(this.settled, this.base);
+            this.base++;
+        }
+    }
+
+    private static boolean isSet(long[] bits, long tag) {
+        int index = (int) (tag & MASK);
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, long tag) {
+        int index = (int) (tag & MASK);
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(long[] bits, long tag) {
+        int index = (int) (tag & MASK);
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /** Used when no scheduler is provided, its single thread does not prevent the JVM from exiting. */
+    private static final class DefaultScheduler {
+
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(r);
+            thread.setName("rabbitmq-ack-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -24,11 +24,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Manages a set of channels, indexed by channel number (<code><b>1.._channelMax</b></code>).
@@ -37,10 +38,13 @@ public class ChannelManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ChannelManager.class);
 
-    /** Monitor for <code>_channelMap</code> and <code>channelNumberAllocator</code> */
+    /**
+     * Monitor for <code>channelNumberAllocator</code> and the allocation of entries in <code>_channelMap</code>.
+     * Lookups in <code>_channelMap</code> (once per inbound frame) do not take it.
+     */
     private final Object monitor = new Object();
         /** Mapping from <code><b>1.._channelMax</b></code> to {@link ChannelN} instance */
-        private final Map<Integer, ChannelN> _channelMap = new HashMap<Integer, ChannelN>();
+        private final ChannelTable<ChannelN> _channelMap;
         private final IntAllocator channelNumberAllocator;
 
     private final ConsumerWorkService workService;
@@ -77,6 +81,7 @@ public class ChannelManager {
         }
         _channelMax = channelMax;
         channelNumberAllocator = new IntAllocator(1, channelMax);
+        _channelMap = new ChannelTable<ChannelN>(channelMax);
 
         this.workService = workService;
         this.threadFactory = threadFactory;
@@ -90,11 +95,9 @@ public class ChannelManager {
      * @throws UnknownChannelException if there is no channel with number <code><b>channelNumber</b></code> on this connection
      */
     public ChannelN getChannel(int channelNumber) {
-        synchronized (this.monitor) {
-            ChannelN ch = _channelMap.get(channelNumber);
-            if(ch == null) throw new UnknownChannelException(channelNumber);
-            return ch;
-        }
+        ChannelN ch = _channelMap.get(channelNumber);
+        if(ch == null) throw new UnknownChannelException(channelNumber);
+        return ch;
     }
 
     /**
@@ -102,34 +105,46 @@ public class ChannelManager {
      * @param signal reason for shutdown
      */
     public void handleSignal(final ShutdownSignalException signal) {
-        Set<ChannelN> channels;
-        synchronized(this.monitor) {
-            channels = new HashSet<ChannelN>(_channelMap.values());
-        }
+        Set<ChannelN> channels = new HashSet<ChannelN>(_channelMap.values());
 
-        for (final ChannelN channel : channels) {
-            releaseChannelNumber(channel);
+        if (this.shutdownExecutor == null) {
+            for (ChannelN channel : channels) {
+                releaseChannelNumber(channel);
+                channel.processShutdownSignal(signal, true, true);
+                shutdownSet.add(channel.getShutdownLatch());
+                channel.notifyListeners();
+            }
+        } else {
             // async shutdown if possible
             // see https://github.com/rabbitmq/rabbitmq-java-client/issues/194
-            Runnable channelShutdownRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    channel.processShutdownSignal(signal, true, true);
-                }
-            };
-            if(this.shutdownExecutor == null) {
-                channelShutdownRunnable.run();
-            } else {
-                Future<?> channelShutdownTask = this.shutdownExecutor.submit(channelShutdownRunnable);
+            // all the channels are shut down in parallel and the timeout
+            // applies to them as a whole, not to each of them
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(channelShutdownTimeout);
+            Map<ChannelShutdownTask, Future<?>> channelShutdownTasks = new LinkedHashMap<ChannelShutdownTask, Future<?>>(channels.size());
+            for (ChannelN channel : channels) {
+                releaseChannelNumber(channel);
+                ChannelShutdownTask channelShutdownTask = new ChannelShutdownTask(channel, signal);
+                channelShutdownTasks.put(channelShutdownTask, this.shutdownExecutor.submit(channelShutdownTask));
+            }
+            for (Map.Entry<ChannelShutdownTask, Future<?>> entry : channelShutdownTasks.entrySet()) {
+                ChannelShutdownTask channelShutdownTask = entry.getKey();
+                ChannelN channel = channelShutdownTask.channel;
                 try {
-                    channelShutdownTask.get(channelShutdownTimeout, TimeUnit.MILLISECONDS);
+                    entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
                 } catch (Exception e) {
-                    LOGGER.warn("Couldn't properly close channel {} on shutdown after waiting for {} ms", channel.getChannelNumber(), channelShutdownTimeout);
-                    channelShutdownTask.cancel(true);
+                    if (channelShutdownTask.claim()) {
+                        // still queued in the executor (e.g. shared with other connections),
+                        // the channel must be shut down anyway
+                        entry.getValue().cancel(false);
+                        channelShutdownTask.shutdown();
+                    } else {
+                        LOGGER.warn("Couldn't properly close channel {} on shutdown after waiting for {} ms", channel.getChannelNumber(), channelShutdownTimeout);
+                        entry.getValue().cancel(true);
+                    }
                 }
+                shutdownSet.add(channel.getShutdownLatch());
+                channel.notifyListeners();
             }
-            shutdownSet.add(channel.getShutdownLatch());
-            channel.notifyListeners();
         }
         scheduleShutdownProcessing();
     }
@@ -140,11 +155,13 @@ public class ChannelManager {
         Runnable target = new Runnable() {
             @Override
             public void run() {
+                // one deadline for all the channels, as they shut down concurrently
+                int shutdownTimeout = ssWorkService.getShutdownTimeout();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeout);
                 for (CountDownLatch latch : sdSet) {
                     try {
-                        int shutdownTimeout = ssWorkService.getShutdownTimeout();
                         if (shutdownTimeout == 0) latch.await();
-                        else                      latch.await(shutdownTimeout, TimeUnit.MILLISECONDS);
+                        else                      latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
                     } catch (Throwable e) {
                          /*ignored*/
                     }
@@ -191,7 +208,8 @@ public class ChannelManager {
     }
 
     private ChannelN addNewChannel(AMQConnection connection, int channelNumber) {
-        if (_channelMap.containsKey(channelNumber)) {
+        ChannelN ch = instantiateChannel(connection, channelNumber, this.workService);
+        if (!_channelMap.putIfAbsent(channelNumber, ch)) {
             // That number's already allocated! Can't do it
             // This should never happen unless something has gone
             // badly wrong with our implementation.
@@ -200,8 +218,6 @@ public class ChannelManager {
                     + "use. This should never happen. "
                     + "Please report this as a bug.");
         }
-        ChannelN ch = instantiateChannel(connection, channelNumber, this.workService);
-        _channelMap.put(ch.getChannelNumber(), ch);
         return ch;
     }
 
@@ -226,19 +242,15 @@ public class ChannelManager {
         // a way as to cause disconnectChannel on the old channel to try to
         // remove the new one. Ideally we would fix this race at the source,
         // but it's much easier to just catch it here.
-        synchronized (this.monitor) {
-            int channelNumber = channel.getChannelNumber();
-            ChannelN existing = _channelMap.remove(channelNumber);
-            // Nothing to do here. Move along.
-            if (existing == null)
-                return;
-            // Oops, we've gone and stomped on someone else's channel. Put it
-            // back and pretend we didn't touch it.
-            else if (existing != channel) {
-                _channelMap.put(channelNumber, existing);
-                return;
+        // The conditional remove only takes the entry out if it is still
+        // this channel, so we cannot stomp on someone else's channel. The
+        // number is freed afterwards, so it cannot be handed out again while
+        // the entry is still in the map.
+        int channelNumber = channel.getChannelNumber();
+        if (_channelMap.remove(channelNumber, channel)) {
+            synchronized (this.monitor) {
+                channelNumberAllocator.free(channelNumber);
             }
-            channelNumberAllocator.free(channelNumber);
         }
     }
 
@@ -252,8 +264,9 @@ public class ChannelManager {
 
     /**
      * Set the shutdown timeout for channels.
-     * This is the amount of time the manager waits for a channel to
-     * shutdown before giving up.
+     * This is the amount of time the manager waits for the channels to
+     * shutdown before giving up. The channels are shut down in parallel,
+     * so the timeout applies to all of them, not to each channel.
      * Works only when the {@code shutdownExecutor} property is set.
      * Default to {@link com.rabbitmq.client.ConnectionFactory#DEFAULT_HEARTBEAT} + 5 % seconds
      * @param channelShutdownTimeout shutdown timeout in milliseconds
@@ -261,4 +274,35 @@ public class ChannelManager {
     public void setChannelShutdownTimeout(int channelShutdownTimeout) {
         this.channelShutdownTimeout = channelShutdownTimeout;
     }
+
+    /**
+     * Shutdown of a channel, run by whichever of the shutdown executor
+     * or the thread handling the signal claims it first.
+     */
+    private static final class ChannelShutdownTask implements Runnable {
+
+        private final ChannelN channel;
+        private final ShutdownSignalException signal;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        private ChannelShutdownTask(ChannelN channel, ShutdownSignalException signal) {
+            this.channel = channel;
+            this.signal = signal;
+        }
+
+        boolean claim() {
+            return this.claimed.compareAndSet(false, true);
+        }
+
+        void shutdown() {
+            this.channel.processShutdownSignal(this.signal, true, true);
+        }
+
+        @Override
+        public void run() {
+            if (claim()) {
+                shutdown();
+            }
+        }
+    }
 }
@@ -55,14 +55,17 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
 
     /** Map from consumer tag to {@link Consumer} instance.
      * <p/>
-     * Note that, in general, this map should ONLY ever be accessed
+     * Note that, in general, this map should ONLY ever be modified
      * from the connection's reader thread. We go to some pains to
      * ensure this is the case - see the use of
      * BlockingRpcContinuation to inject code into the reader thread
      * in basicConsume and basicCancel.
+     * <p/>
+     * The map is read for every delivery, so lookups must not block:
+     * a concurrent map is used instead of a synchronized one.
      */
     private final Map<String, Consumer> _consumers =
-        Collections.synchronizedMap(new HashMap<String, Consumer>());
+        new ConcurrentHashMap<String, Consumer>();
 
     /* All listeners collections are in CopyOnWriteArrayList objects */
     /** The ReturnListener collection. */
@@ -79,6 +82,22 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     /** Dispatcher of consumer work for this channel */
     private final ConsumerDispatcher dispatcher;
 
+    /** Channel-wide prefetch count last set with {@link #basicQos(int, int, boolean)}, 0 means unlimited. */
+    private volatile int prefetchCountGlobal = 0;
+
+    /** Whether the prefetch is lowered because of consumer back-pressure, guarded by itself. */
+    private final Object backPressureLock = new Object();
+    private boolean throttled = false;
+
+    /** Adjusts the prefetch count at runtime, null unless enabled. */
+    private volatile PrefetchController prefetchController;
+
+    /** Coalesces acknowledgements, null unless enabled. */
+    private volatile AckCoalescer ackCoalescer;
+
+    /** Whether a delivery has been received, acknowledgement coalescing must be enabled before. */
+    private volatile boolean deliveriesReceived = false;
+
     /** Future boolean for shutting down */
     private volatile CountDownLatch finishedShutdownFlag = null;
 
@@ -208,6 +227,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
             throws InterruptedException, TimeoutException {
         if (nextPublishSeqNo == 0L)
             throw new IllegalStateException("Confirms not selected");
+        ensureNotDispatchingInline("waitForConfirms");
         long startTime = System.currentTimeMillis();
         synchronized (unconfirmedSet) {
             while (true) {
@@ -274,13 +294,27 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
         defaultConsumer = consumer;
     }
 
+    /** Public API - {@inheritDoc} */
+    @Override
+    public void setConsumerDispatchWeight(int weight) {
+        dispatcher.setWeight(weight);
+    }
+
+    /**
+     * @return the latencies between consumer callbacks of this channel
+     * being ready to run and getting a dispatch thread
+     */
+    public LatencyHistogram getConsumerDispatchLatency() {
+        return dispatcher.getDispatchLatency();
+    }
+
     /**
      * Sends a ShutdownSignal to all active consumers.
      * Idempotent.
      * @param signal an exception signalling channel shutdown
      */
     private void broadcastShutdownSignal(ShutdownSignalException signal) {
-        this.finishedShutdownFlag = this.dispatcher.handleShutdownSignal(Utility.copy(_consumers), signal);
+        this.finishedShutdownFlag = this.dispatcher.handleShutdownSignal(new HashMap<String, Consumer>(_consumers), signal);
     }
 
     /**
@@ -375,7 +409,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
                 handleAckNack(nack.getDeliveryTag(), nack.getMultiple(), true);
                 return true;
             } else if (method instanceof Basic.RecoverOk) {
-                for (Map.Entry<String, Consumer> entry : Utility.copy(_consumers).entrySet()) {
+                for (Map.Entry<String, Consumer> entry : _consumers.entrySet()) {
                     this.dispatcher.handleRecoverOk(entry.getValue(), entry.getKey());
                 }
                 // Unlike all the other cases we still want this RecoverOk to
@@ -443,20 +477,35 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
             }
         }
 
-        Envelope envelope = new Envelope(m.getDeliveryTag(),
-                                         m.getRedelivered(),
-                                         m.getExchange(),
-                                         m.getRoutingKey());
         try {
             // call metricsCollector before the dispatching (which is async anyway)
             // this way, the message is inside the stats before it is handled
             // in case a manual ack in the callback, the stats will be able to record the ack
             metricsCollector.consumedMessage(this, m.getDeliveryTag(), m.getConsumerTag());
-            this.dispatcher.handleDelivery(callback,
-                                           m.getConsumerTag(),
-                                           envelope,
-                                           (BasicProperties) command.getContentHeader(),
-                                           command.getContentBody());
+            if (!deliveriesReceived) {
+                deliveriesReceived = true;
+            }
+            PrefetchController controller = this.prefetchController;
+            if (controller != null) {
+                controller.delivered(m.getDeliveryTag());
+            }
+            if (callback instanceof LowAllocationConsumer) {
+                // no envelope, the fields are passed as they are
+                this.dispatcher.handleDelivery((LowAllocationConsumer) callback,
+                                               m,
+                                               (BasicProperties) command.getContentHeader(),
+                                               command.getContentBody());
+            } else {
+                Envelope envelope = new Envelope(m.getDeliveryTag(),
+                                                 m.getRedelivered(),
+                                                 m.getExchange(),
+                                                 m.getRoutingKey());
+                this.dispatcher.handleDelivery(callback,
+                                               m.getConsumerTag(),
+                                               envelope,
+                                               (BasicProperties) command.getContentHeader(),
+                                               command.getContentBody());
+            }
         } catch (WorkPoolFullException e) {
             // couldn't enqueue in work pool, propagating
             throw e;
@@ -574,6 +623,10 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
                       Throwable cause,
                       boolean abort)
         throws IOException, TimeoutException {
+        AckCoalescer coalescer = this.ackCoalescer;
+        if (coalescer != null && initiatedByApplication) {
+            coalescer.flushQuietly();
+        }
         // First, notify all our dependents that we are shutting down.
         // This clears isOpen(), so no further work from the
         // application side will be accepted, and any inbound commands
@@ -587,13 +640,23 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
             signal.initCause(cause);
         }
 
+        // The reply is read by the connection thread: if we are on this thread
+        // (e.g. in an inline consumer callback), waiting for it would block
+        // until the timeout, so the reply completes the close instead.
+        final boolean sync = !ConsumerDispatcher.isDispatchingInline() &&
+            !getConnection().inMainLoopThread();
         BlockingRpcContinuation<AMQCommand> k = new BlockingRpcContinuation<AMQCommand>(){
             @Override
             public AMQCommand transformReply(AMQCommand command) {
                 ChannelN.this.finishProcessShutdownSignal();
+                if (!sync) {
+                    releaseChannel();
+                    notifyListeners();
+                }
                 return command;
             }};
         boolean notify = false;
+        boolean completedByReply = false;
         try {
             // Synchronize the block below to avoid race conditions in case
             // connnection wants to send Connection-CloseOK
@@ -605,9 +668,13 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
             // Now that we're in quiescing state, channel.close was sent and
             // we wait for the reply. We ignore the result.
             // (It's NOT always close-ok.)
-            notify = true;
-			      // do not wait indefinitely
-            k.getReply(10000);
+            if (sync) {
+                notify = true;
+                // do not wait indefinitely
+                k.getReply(10000);
+            } else {
+                completedByReply = true;
+            }
         } catch (TimeoutException ise) {
             if (!abort)
                 throw ise;
@@ -618,7 +685,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
             if (!abort)
                 throw ioe;
         } finally {
-            if (abort || notify) {
+            if ((abort || notify) && !completedByReply) {
                 // Now we know everything's been cleaned up and there should
                 // be no more surprises arriving on the wire. Release the
                 // channel number, and dissociate this ChannelN instance from
@@ -636,6 +703,104 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
 	throws IOException
     {
 	exnWrappingRpc(new Basic.Qos(prefetchSize, prefetchCount, global));
+        if (global) {
+            this.prefetchCountGlobal = prefetchCount;
+        }
+    }
+
+    /**
+     * Lowers the channel-wide prefetch count while the channel has too much
+     * pending consumer work, and restores it once the work has been processed.
+     * The broker then stops delivering to this channel until enough messages
+     * are acknowledged, while the connection keeps reading frames for the
+     * other channels. Has no effect on consumers in automatic acknowledgement mode.
+     * <p>
+     * Called by the {@link ConsumerWorkService} when back-pressure is enabled, on the
+     * connection thread or on a dispatch thread: the Basic.Qos is sent without
+     * waiting for the reply.
+     */
+    void applyConsumerBackPressure() {
+        synchronized (backPressureLock) {
+            // calls can overlap, so apply the latest state rather than the one notified
+            boolean overloaded = dispatcher.isOverloaded();
+            if (overloaded == throttled || !isOpen()) {
+                return;
+            }
+            int prefetchCount;
+            if (overloaded) {
+                prefetchCount = prefetchCountGlobal == 0 ?
+                    WorkPool.LOW_WATER_MARK : Math.min(WorkPool.LOW_WATER_MARK, prefetchCountGlobal);
+            } else {
+                prefetchCount = prefetchCountGlobal;
+            }
+            try {
+                exnWrappingAsyncRpc(new Basic.Qos(0, prefetchCount, true));
+                throttled = overloaded;
+                LOGGER.debug("Channel {} {}, channel prefetch count set to {}",
+                    getChannelNumber(), overloaded ? "has too much pending work" : "caught up", prefetchCount);
+            } catch (IOException | ShutdownSignalException e) {
+                LOGGER.debug("Could not change prefetch count of channel {}: {}", getChannelNumber(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Let the client adjust the channel-wide prefetch count at runtime,
+     * depending on how fast consumers process messages.
+     * The prefetch count starts at the current channel-wide prefetch count,
+     * or at <code>minPrefetch</code> if none is set.
+     * See {@link PrefetchController} for the details.
+     * @param minPrefetch lowest prefetch count to use, at least 1
+     * @param maxPrefetch highest prefetch count to use, at most 65535
+     * @return the controller, which gives its measurements and decisions
+     * @throws IOException if setting the initial prefetch count fails
+     * @since 5.3.0
+     */
+    public PrefetchController enableAdaptivePrefetch(int minPrefetch, int maxPrefetch) throws IOException {
+        PrefetchController controller = new PrefetchController(this, minPrefetch, maxPrefetch,
+            prefetchCountGlobal == 0 ? minPrefetch : prefetchCountGlobal, PrefetchController.DEFAULT_INTERVAL_NANOS);
+        basicQos(controller.getPrefetch(), true);
+        this.prefetchController = controller;
+        return controller;
+    }
+
+    /**
+     * @return the adaptive prefetch controller, null if not enabled
+     * @see #enableAdaptivePrefetch(int, int)
+     */
+    public PrefetchController getPrefetchController() {
+        return prefetchController;
+    }
+
+    /**
+     * @return number of deliveries and other callbacks waiting for the consumers of this channel
+     */
+    int getConsumerWorkQueueSize() {
+        return dispatcher.getQueueSize();
+    }
+
+    /**
+     * Sets the channel-wide prefetch count chosen by the {@link PrefetchController},
+     * without waiting for the reply. If the channel is throttled by back-pressure,
+     * the prefetch count is applied when it is restored.
+     * @return true if the prefetch count was or will be applied
+     */
+    boolean applyAdaptivePrefetch(int prefetchCount) {
+        synchronized (backPressureLock) {
+            if (throttled) {
+                prefetchCountGlobal = prefetchCount;
+                return true;
+            }
+            try {
+                exnWrappingAsyncRpc(new Basic.Qos(0, prefetchCount, true));
+                prefetchCountGlobal = prefetchCount;
+                LOGGER.debug("Channel {} prefetch count adjusted to {}", getChannelNumber(), prefetchCount);
+                return true;
+            } catch (IOException | ShutdownSignalException e) {
+                LOGGER.debug("Could not adjust prefetch count of channel {}: {}", getChannelNumber(), e.getMessage());
+                return false;
+            }
+        }
     }
 
     /** Public API - {@inheritDoc} */
@@ -1170,8 +1335,9 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     public void basicAck(long deliveryTag, boolean multiple)
         throws IOException
     {
-        transmit(new Basic.Ack(deliveryTag, multiple));
+        transmitAck(deliveryTag, multiple);
         metricsCollector.basicAck(this, deliveryTag, multiple);
+        recordAcknowledgement(deliveryTag, multiple);
     }
 
     /** Public API - {@inheritDoc} */
@@ -1179,8 +1345,9 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     public void basicNack(long deliveryTag, boolean multiple, boolean requeue)
         throws IOException
     {
-        transmit(new Basic.Nack(deliveryTag, multiple, requeue));
+        transmitNack(deliveryTag, multiple, requeue);
         metricsCollector.basicNack(this, deliveryTag);
+        recordAcknowledgement(deliveryTag, multiple);
     }
 
     /** Public API - {@inheritDoc} */
@@ -1188,8 +1355,93 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     public void basicReject(long deliveryTag, boolean requeue)
         throws IOException
     {
-        transmit(new Basic.Reject(deliveryTag, requeue));
+        transmitReject(deliveryTag, requeue);
         metricsCollector.basicReject(this, deliveryTag);
+        recordAcknowledgement(deliveryTag, false);
+    }
+
+    /**
+     * Sends a <code>basic.ack</code>, through the {@link AckCoalescer} if enabled.
+     */
+    protected void transmitAck(long deliveryTag, boolean multiple) throws IOException {
+        AckCoalescer coalescer = this.ackCoalescer;
+        if (coalescer == null) {
+            transmit(new Basic.Ack(deliveryTag, multiple));
+        } else {
+            coalescer.ack(deliveryTag, multiple);
+        }
+    }
+
+    /**
+     * Sends a <code>basic.nack</code>, after the pending acknowledgements if coalescing is enabled.
+     */
+    protected void transmitNack(long deliveryTag, boolean multiple, boolean requeue) throws IOException {
+        AckCoalescer coalescer = this.ackCoalescer;
+        if (coalescer == null) {
+            transmit(new Basic.Nack(deliveryTag, multiple, requeue));
+        } else {
+            coalescer.nack(deliveryTag, multiple, requeue);
+        }
+    }
+
+    /**
+     * Sends a <code>basic.reject</code>, after the pending acknowledgements if coalescing is enabled.
+     */
+    protected void transmitReject(long deliveryTag, boolean requeue) throws IOException {
+        AckCoalescer coalescer = this.ackCoalescer;
+        if (coalescer == null) {
+            transmit(new Basic.Reject(deliveryTag, requeue));
+        } else {
+            coalescer.reject(deliveryTag, requeue);
+        }
+    }
+
+    /**
+     * Tells the {@link PrefetchController}, if any, that messages were settled.
+     * @param deliveryTag delivery tag as seen by the application
+     * @param multiple whether all the messages up to the delivery tag are settled
+     */
+    protected void recordAcknowledgement(long deliveryTag, boolean multiple) {
+        PrefetchController controller = this.prefetchController;
+        if (controller != null) {
+            controller.acknowledged(deliveryTag, multiple);
+        }
+    }
+
+    /**
+     * Coalesce acknowledgements of this channel into <code>basic.ack</code> with
+     * <code>multiple</code> set, to send fewer frames to the broker.
+     * Acknowledgements are sent when <code>maxBatchSize</code> of them are
+     * pending, or <code>maxDelay</code> after the first of them.
+     * Pending acknowledgements are sent before any <code>basic.nack</code>,
+     * <code>basic.reject</code>, <code>basic.recover</code>, transaction
+     * commit or rollback and before the channel is closed by the application.
+     * They are lost if the channel or the connection fails, in which case
+     * the broker redelivers the messages.
+     * See {@link AckCoalescer} for the details.
+     * @param maxBatchSize number of pending acknowledgements that triggers sending
+     * @param maxDelay time after which pending acknowledgements are sent
+     * @param unit unit of <code>maxDelay</code>
+     * @param scheduler executor to send acknowledgements after <code>maxDelay</code>,
+     *                  a shared daemon thread is used if null
+     * @throws IllegalStateException if the channel already received deliveries
+     * @since 5.3.0
+     */
+    public void enableAckCoalescing(int maxBatchSize, long maxDelay, TimeUnit unit, ScheduledExecutorService scheduler) {
+        if (deliveriesReceived) {
+            throw new IllegalStateException("Acknowledgement coalescing must be enabled before consuming");
+        }
+        this.ackCoalescer = new AckCoalescer(this, maxBatchSize, maxDelay, unit, scheduler);
+    }
+
+    /**
+     * Sends the pending coalesced acknowledgements, if any.
+     */
+    private void flushAcks() throws IOException {
+        AckCoalescer coalescer = this.ackCoalescer;
+        if (coalescer != null) {
+            coalescer.flush();
+        }
     }
 
     /** Public API - {@inheritDoc} */
@@ -1365,7 +1617,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
                 try {
                     return k.getReply(_rpcTimeout);
                 } catch (TimeoutException e) {
-                    throw wrapTimeoutException(m, e);
+                    throw wrapTimeoutException(m, k, e);
                 }
             }
         } catch(ShutdownSignalException ex) {
@@ -1459,7 +1711,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     public void basicCancel(final String consumerTag)
         throws IOException
     {
-        final Consumer originalConsumer = _consumers.get(consumerTag);
+        final Consumer originalConsumer = consumerTag == null ? null : _consumers.get(consumerTag);
         if (originalConsumer == null)
             throw new IOException("Unknown consumerTag");
 
@@ -1485,7 +1737,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
                 try {
                     k.getReply(_rpcTimeout);
                 } catch (TimeoutException e) {
-                    throw wrapTimeoutException(m, e);
+                    throw wrapTimeoutException(m, k, e);
                 }
             }
         } catch(ShutdownSignalException ex) {
@@ -1508,6 +1760,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     public Basic.RecoverOk basicRecover(boolean requeue)
         throws IOException
     {
+        flushAcks();
         return (Basic.RecoverOk) exnWrappingRpc(new Basic.Recover(requeue)).getMethod();
     }
 
@@ -1525,6 +1778,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     public Tx.CommitOk txCommit()
         throws IOException
     {
+        flushAcks();
         return (Tx.CommitOk) exnWrappingRpc(new Tx.Commit()).getMethod();
     }
 
@@ -1533,6 +1787,7 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     public Tx.RollbackOk txRollback()
         throws IOException
     {
+        flushAcks();
         return (Tx.RollbackOk) exnWrappingRpc(new Tx.Rollback()).getMethod();
     }
 
@@ -1579,7 +1834,10 @@ public class ChannelN extends AMQChannel implements com.rabbitmq.client.Channel
     @Override
     protected void markRpcFinished() {
         synchronized (_channelMutex) {
-            dispatcher.setUnlimited(false);
+            // other pipelined RPCs may still be waiting for their reply
+            if (!isOutstandingRpc()) {
+                dispatcher.setUnlimited(false);
+            }
         }
     }
 
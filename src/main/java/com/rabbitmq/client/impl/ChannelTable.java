@@ -0,0 +1,110 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Routing table from channel number to channel.
+ * <p>
+ * The 16-bit channel space is split in pages of {@link #PAGE_SIZE} slots,
+ * allocated on first use, so a connection with a few channels does not pay
+ * for 65535 slots. Slots are {@link AtomicReferenceArray} elements: a lookup
+ * is two volatile array loads, with no lock and no boxing of the channel number.
+ * <p>
+ * Writers are expected to coordinate on the channel number (see
+ * {@link ChannelManager}), readers can run concurrently with them.
+ *
+ * @since 5.3.0
+ */
+final class ChannelTable<T> {
+
+    static final int PAGE_BITS = 8;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> pages;
+
+    ChannelTable(int channelMax) {
+        if (channelMax < 0 || channelMax > 0xFFFF) {
+            throw new IllegalArgumentException("Channel max must be between 0 and 65535: " + channelMax);
+        }
+        this.pages = new AtomicReferenceArray<AtomicReferenceArray<T>>((channelMax >> PAGE_BITS) + 1);
+    }
+
+    /**
+     * @return the channel with this number, null if there is none
+     */
+    T get(int channelNumber) {
+        int page = channelNumber >> PAGE_BITS;
+        if (channelNumber < 0 || page >= pages.length()) {
+            return null;
+        }
+        AtomicReferenceArray<T> slots = pages.get(page);
+        return slots == null ? null : slots.get(channelNumber & PAGE_MASK);
+    }
+
+    /**
+     * Stores the channel if the slot is empty.
+     * @return true if the channel was stored
+     */
+    boolean putIfAbsent(int channelNumber, T channel) {
+        return page(channelNumber).compareAndSet(channelNumber & PAGE_MASK, null, channel);
+    }
+
+    /**
+     * Clears the slot if it still holds this channel.
+     * @return true if the slot was cleared
+     */
+    boolean remove(int channelNumber, T channel) {
+        AtomicReferenceArray<T> slots = pages.get(channelNumber >> PAGE_BITS);
+        return slots != null && slots.compareAndSet(channelNumber & PAGE_MASK, channel, null);
+    }
+
+    /**
+     * @return the channels currently in the table, in channel number order
+     */
+    List<T> values() {
+        List<T> values = new ArrayList<T>();
+        for (int i = 0; i < pages.length(); i++) {
+            AtomicReferenceArray<T> slots = pages.get(i);
+            if (slots != null) {
+                for (int j = 0; j < PAGE_SIZE; j++) {
+                    T channel = slots.get(j);
+                    if (channel != null) {
+                        values.add(channel);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private AtomicReferenceArray<T> page(int channelNumber) {
+        int page = channelNumber >> PAGE_BITS;
+        if (channelNumber < 0 || page >= pages.length()) {
+            throw new IllegalArgumentException("Channel number out of range: " + channelNumber);
+        }
+        AtomicReferenceArray<T> slots = pages.get(page);
+        if (slots == null) {
+            pages.compareAndSet(page, null, new AtomicReferenceArray<T>(PAGE_SIZE));
+            slots = pages.get(page);
+        }
+        return slots;
+    }
+}
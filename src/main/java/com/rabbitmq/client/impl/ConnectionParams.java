@@ -16,6 +16,7 @@
 package com.rabbitmq.client.impl;
 
 import com.rabbitmq.client.ExceptionHandler;
+import com.rabbitmq.client.RecoveryAttemptLimiter;
 import com.rabbitmq.client.RecoveryDelayHandler;
 import com.rabbitmq.client.RecoveryDelayHandler.DefaultRecoveryDelayHandler;
 import com.rabbitmq.client.SaslConfig;
@@ -24,6 +25,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
 
 public class ConnectionParams {
     private CredentialsProvider credentialsProvider;
@@ -45,6 +47,15 @@ public class ConnectionParams {
     private boolean channelShouldCheckRpcResponseType;
     private ErrorOnWriteListener errorOnWriteListener;
     private int workPoolTimeout = -1;
+    private boolean consumerDispatchOnVirtualThreads;
+    private ConsumerDispatchPool consumerDispatchPool;
+    private boolean consumerBackPressure;
+    private ExecutorService frameDecodingExecutor;
+    private ExecutorService topologyRecoveryExecutor;
+    private int topologyRecoveryDeadline;
+    private Predicate<String> topologyRecoveryPriority;
+    private boolean standbyConnectionEnabled;
+    private RecoveryAttemptLimiter recoveryAttemptLimiter;
 
     private ExceptionHandler exceptionHandler;
     private ThreadFactory threadFactory;
@@ -222,4 +233,76 @@ public class ConnectionParams {
     public int getWorkPoolTimeout() {
         return workPoolTimeout;
     }
+
+    public void setConsumerDispatchOnVirtualThreads(boolean consumerDispatchOnVirtualThreads) {
+        this.consumerDispatchOnVirtualThreads = consumerDispatchOnVirtualThreads;
+    }
+
+    public boolean isConsumerDispatchOnVirtualThreads() {
+        return consumerDispatchOnVirtualThreads;
+    }
+
+    public void setConsumerDispatchPool(ConsumerDispatchPool consumerDispatchPool) {
+        this.consumerDispatchPool = consumerDispatchPool;
+    }
+
+    public ConsumerDispatchPool getConsumerDispatchPool() {
+        return consumerDispatchPool;
+    }
+
+    public void setConsumerBackPressure(boolean consumerBackPressure) {
+        this.consumerBackPressure = consumerBackPressure;
+    }
+
+    public boolean isConsumerBackPressure() {
+        return consumerBackPressure;
+    }
+
+    public void setFrameDecodingExecutor(ExecutorService frameDecodingExecutor) {
+        this.frameDecodingExecutor = frameDecodingExecutor;
+    }
+
+    public ExecutorService getFrameDecodingExecutor() {
+        return frameDecodingExecutor;
+    }
+
+    public void setTopologyRecoveryExecutor(ExecutorService topologyRecoveryExecutor) {
+        this.topologyRecoveryExecutor = topologyRecoveryExecutor;
+    }
+
+    public ExecutorService getTopologyRecoveryExecutor() {
+        return topologyRecoveryExecutor;
+    }
+
+    public void setTopologyRecoveryDeadline(int topologyRecoveryDeadline) {
+        this.topologyRecoveryDeadline = topologyRecoveryDeadline;
+    }
+
+    public int getTopologyRecoveryDeadline() {
+        return topologyRecoveryDeadline;
+    }
+
+    public void setTopologyRecoveryPriority(Predicate<String> topologyRecoveryPriority) {
+        this.topologyRecoveryPriority = topologyRecoveryPriority;
+    }
+
+    public Predicate<String> getTopologyRecoveryPriority() {
+        return topologyRecoveryPriority;
+    }
+
+    public void setStandbyConnectionEnabled(boolean standbyConnectionEnabled) {
+        this.standbyConnectionEnabled = standbyConnectionEnabled;
+    }
+
+    public boolean isStandbyConnectionEnabled() {
+        return standbyConnectionEnabled;
+    }
+
+    public void setRecoveryAttemptLimiter(RecoveryAttemptLimiter recoveryAttemptLimiter) {
+        this.recoveryAttemptLimiter = recoveryAttemptLimiter;
+    }
+
+    public RecoveryAttemptLimiter getRecoveryAttemptLimiter() {
+        return recoveryAttemptLimiter;
+    }
 }
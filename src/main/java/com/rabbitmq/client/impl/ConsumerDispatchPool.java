@@ -0,0 +1,215 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of threads to dispatch consumer callbacks of many connections.
+ * <p>
+ * Each connection gets its own executor from {@link #newConnectionExecutor()},
+ * which runs its tasks on the threads of the pool:
+ * <ul>
+ *     <li>a connection runs at most <code>connectionQuota</code> tasks at a time,
+ *     so it cannot take all the threads of the pool;</li>
+ *     <li>connections with pending tasks are served in turn, one task each,
+ *     so a busy connection does not starve the others.</li>
+ * </ul>
+ * A connection executor is shut down with its connection, the pool itself
+ * must be closed by the application once no connection uses it.
+ * <p>
+ * Use {@link com.rabbitmq.client.ConnectionFactory#setConsumerDispatchPool(ConsumerDispatchPool)}
+ * to share a pool between the connections of a factory.
+ *
+ * @since 5.3.0
+ */
+public class ConsumerDispatchPool implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean privateExecutor;
+    private final int connectionQuota;
+
+    /**
+     * Creates a pool with its own threads.
+     * @param threads number of threads of the pool
+     * @param connectionQuota max number of threads a connection can use at a time
+     * @param threadFactory factory for the threads of the pool
+     */
+    public ConsumerDispatchPool(int threads, int connectionQuota, ThreadFactory threadFactory) {
+        this(Executors.newFixedThreadPool(threads, threadFactory), true, connectionQuota);
+    }
+
+    /**
+     * Creates a pool with its own threads.
+     * @param threads number of threads of the pool
+     * @param connectionQuota max number of threads a connection can use at a time
+     */
+    public ConsumerDispatchPool(int threads, int connectionQuota) {
+        this(threads, connectionQuota, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a pool on top of an existing executor.
+     * The executor should be bounded (e.g. a fixed thread pool)
+     * and execute tasks in the order they are submitted.
+     * It's developer's responsibility to shut it down when it is no longer needed.
+     * @param executor the executor to run tasks on
+     * @param connectionQuota max number of tasks a connection can run at a time
+     */
+    public ConsumerDispatchPool(ExecutorService executor, int connectionQuota) {
+        this(executor, false, connectionQuota);
+    }
+
+    private ConsumerDispatchPool(ExecutorService executor, boolean privateExecutor, int connectionQuota) {
+        if (connectionQuota < 1) {
+            throw new IllegalArgumentException("Connection quota must be at least 1: " + connectionQuota);
+        }
+        this.executor = executor;
+        this.privateExecutor = privateExecutor;
+        this.connectionQuota = connectionQuota;
+    }
+
+    /**
+     * @return a new executor for a connection, to shut down when the connection closes
+     */
+    public ExecutorService newConnectionExecutor() {
+        return new ConnectionExecutor();
+    }
+
+    public int getConnectionQuota() {
+        return connectionQuota;
+    }
+
+    /**
+     * Shuts down the threads of the pool, if it created them.
+     */
+    @Override
+    public void close() {
+        if (privateExecutor) {
+            this.executor.shutdown();
+        }
+    }
+
+    /**
+     * Tasks of a connection.
+     * <p>
+     * A <i>slot</i> is taken for each task submitted to the underlying executor,
+     * up to the quota. When a slot finishes its task, it is released and taken again
+     * right away if there are more tasks: the connection then goes to the back of
+     * the queue of the underlying executor, behind the other connections.
+     */
+    private final class ConnectionExecutor extends AbstractExecutorService {
+
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger slots = new AtomicInteger(0);
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private volatile boolean shutdown = false;
+
+        /** Submitted to the underlying executor for each slot taken, runs one task. */
+        private final Runnable runOne = () -> {
+            try {
+                Runnable task = this.tasks.poll();
+                if (task != null) {
+                    task.run();
+                }
+            } finally {
+                // release, then check the tasks: see execute
+                this.slots.decrementAndGet();
+                takeSlotIfNeeded();
+                terminateIfIdle();
+            }
+        };
+
+        @Override
+        public void execute(Runnable command) {
+            if (this.shutdown) {
+                throw new RejectedExecutionException("Connection executor has been shut down");
+            }
+            // enqueue, then check the slots: either a slot is taken here or
+            // the task is seen by the slot that is being released
+            this.tasks.offer(command);
+            takeSlotIfNeeded();
+        }
+
+        private void takeSlotIfNeeded() {
+            while (!this.tasks.isEmpty()) {
+                int taken = this.slots.get();
+                if (taken >= connectionQuota) {
+                    return;
+                }
+                if (this.slots.compareAndSet(taken, taken + 1)) {
+                    try {
+                        executor.execute(this.runOne);
+                    } catch (RejectedExecutionException e) {
+                        this.slots.decrementAndGet();
+                        throw e;
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void terminateIfIdle() {
+            if (this.shutdown && this.slots.get() == 0 && this.tasks.isEmpty()) {
+                this.terminated.countDown();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            this.shutdown = true;
+            terminateIfIdle();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            this.shutdown = true;
+            List<Runnable> pending = new ArrayList<Runnable>();
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                pending.add(task);
+            }
+            terminateIfIdle();
+            return Collections.unmodifiableList(pending);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return this.terminated.getCount() == 0;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return this.terminated.await(timeout, unit);
+        }
+    }
+}
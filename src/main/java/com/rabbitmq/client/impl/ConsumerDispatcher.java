@@ -19,12 +19,17 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.InlineDispatchConsumer;
+import com.rabbitmq.client.LowAllocationConsumer;
 import com.rabbitmq.client.ShutdownSignalException;
 import com.rabbitmq.utility.Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dispatches notifications to a {@link Consumer} on an internally-managed executor service and work
@@ -32,9 +37,20 @@ import java.util.concurrent.CountDownLatch;
  * <p/>
  * Each {@link Channel} has a single <code>ConsumerDispatcher</code>, but the executor service and work
  * pool may be shared with other channels, typically those on the same {@link AMQConnection}.
+ * <p/>
+ * Notifications to {@link InlineDispatchConsumer}s are not handed over to the work pool,
+ * they are run directly on the calling thread, usually the connection's reader thread.
  */
 final class ConsumerDispatcher {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerDispatcher.class);
+
+    /** Inline callbacks taking longer than this are logged, as they stall the connection. */
+    private static final long SLOW_INLINE_CALLBACK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /** Set while an inline callback runs on the current thread. */
+    private static final ThreadLocal<Boolean> DISPATCHING_INLINE = new ThreadLocal<Boolean>();
+
     private final ConsumerWorkService workService;
 
     private final AMQConnection connection;
@@ -66,9 +82,25 @@ final class ConsumerDispatcher {
         this.workService.setUnlimited(channel, unlimited);
     }
 
+    public int getQueueSize() {
+        return this.workService.getQueueSize(channel);
+    }
+
+    public boolean isOverloaded() {
+        return this.workService.isOverloaded(channel);
+    }
+
+    public void setWeight(int weight) {
+        this.workService.setWeight(channel, weight);
+    }
+
+    public LatencyHistogram getDispatchLatency() {
+        return this.workService.getDispatchLatency(channel);
+    }
+
     public void handleConsumeOk(final Consumer delegate,
                                 final String consumerTag) {
-        executeUnlessShuttingDown(
+        executeUnlessShuttingDown(delegate,
         new Runnable() {
             @Override
             public void run() {
@@ -88,7 +120,7 @@ final class ConsumerDispatcher {
 
     public void handleCancelOk(final Consumer delegate,
                                final String consumerTag) {
-        executeUnlessShuttingDown(
+        executeUnlessShuttingDown(delegate,
         new Runnable() {
             @Override
             public void run() {
@@ -107,7 +139,7 @@ final class ConsumerDispatcher {
     }
 
     public void handleCancel(final Consumer delegate, final String consumerTag) {
-        executeUnlessShuttingDown(
+        executeUnlessShuttingDown(delegate,
         new Runnable() {
       @Override
     public void run() {
@@ -127,7 +159,7 @@ final class ConsumerDispatcher {
 
 
     public void handleRecoverOk(final Consumer delegate, final String consumerTag) {
-        executeUnlessShuttingDown(
+        executeUnlessShuttingDown(delegate,
         new Runnable() {
             @Override
             public void run() {
@@ -141,7 +173,7 @@ final class ConsumerDispatcher {
                                final Envelope envelope,
                                final AMQP.BasicProperties properties,
                                final byte[] body) throws IOException {
-        executeUnlessShuttingDown(
+        executeUnlessShuttingDown(delegate,
         new Runnable() {
             @Override
             public void run() {
@@ -162,6 +194,34 @@ final class ConsumerDispatcher {
         });
     }
 
+    public void handleDelivery(final LowAllocationConsumer delegate,
+                               final AMQP.Basic.Deliver deliver,
+                               final AMQP.BasicProperties properties,
+                               final byte[] body) throws IOException {
+        executeUnlessShuttingDown(delegate,
+        new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    delegate.handleDelivery(deliver.getConsumerTag(),
+                            deliver.getDeliveryTag(),
+                            deliver.getRedelivered(),
+                            deliver.getExchange(),
+                            deliver.getRoutingKey(),
+                            properties,
+                            body);
+                } catch (Throwable ex) {
+                    connection.getExceptionHandler().handleConsumerException(
+                            channel,
+                            ex,
+                            delegate,
+                            deliver.getConsumerTag(),
+                            "handleDelivery");
+                }
+            }
+        });
+    }
+
     public CountDownLatch handleShutdownSignal(final Map<String, Consumer> consumers,
                                      final ShutdownSignalException signal) {
         // ONLY CASE WHERE WE IGNORE shuttingDown
@@ -205,8 +265,38 @@ final class ConsumerDispatcher {
         }
     }
 
-    private void executeUnlessShuttingDown(Runnable r) {
-        if (!this.shuttingDown) execute(r);
+    private void executeUnlessShuttingDown(Consumer delegate, Runnable r) {
+        if (!this.shuttingDown) {
+            if (delegate instanceof InlineDispatchConsumer) {
+                executeInline(r);
+            } else {
+                execute(r);
+            }
+        }
+    }
+
+    private void executeInline(Runnable r) {
+        checkShutdown();
+        DISPATCHING_INLINE.set(Boolean.TRUE);
+        long start = System.nanoTime();
+        try {
+            r.run();
+        } finally {
+            DISPATCHING_INLINE.remove();
+            long duration = System.nanoTime() - start;
+            if (duration > SLOW_INLINE_CALLBACK_NANOS) {
+                LOGGER.warn("Inline consumer callback on channel {} took {} ms, " +
+                    "the connection could not read any frame in the meantime",
+                    channel, TimeUnit.NANOSECONDS.toMillis(duration));
+            }
+        }
+    }
+
+    /**
+     * @return true if the current thread is running an {@link InlineDispatchConsumer} callback
+     */
+    static boolean isDispatchingInline() {
+        return DISPATCHING_INLINE.get() != null;
     }
 
     private void execute(Runnable r) {
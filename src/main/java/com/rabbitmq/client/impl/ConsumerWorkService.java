@@ -16,33 +16,91 @@
 package com.rabbitmq.client.impl;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
 import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 final public class ConsumerWorkService {
-    private static final int MAX_RUNNABLE_BLOCK_SIZE = 16;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerWorkService.class);
+    /** Blocks a {@link WorkPoolRunnable} runs before handing its thread back to the executor. */
+    private static final int MAX_BLOCKS_PER_RUN = 16;
     private static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors() * 2;
     private final ExecutorService executor;
     private final boolean privateExecutor;
     private final WorkPool<Channel, Runnable> workPool;
+    private final Map<Channel, WorkBlockSizer> blockSizers = new ConcurrentHashMap<Channel, WorkBlockSizer>();
+    private final WorkPool.BlockSizer<Channel> blockSizer = (channel, queued) -> {
+        WorkBlockSizer sizer = this.blockSizers.get(channel);
+        return sizer == null ? WorkBlockSizer.MIN_BLOCK_SIZE : sizer.blockSize(queued);
+    };
     private final int shutdownTimeout;
 
-    public ConsumerWorkService(ExecutorService executor, ThreadFactory threadFactory, int queueingTimeout, int shutdownTimeout) {
+    /**
+     * @param executor executor to dispatch on, a private one is created if null
+     * @param threadFactory thread factory for the private fixed-size executor
+     * @param queueingTimeout timeout in ms to enqueue work, -1 means no timeout
+     * @param shutdownTimeout timeout in ms for consumers to finish on shutdown
+     * @param virtualThreads whether the private executor should run work blocks
+     *                       on virtual threads, ignored if an executor is provided.
+     *                       Falls back to a fixed-size executor if the JVM does not
+     *                       support virtual threads.
+     * @param dispatchPool pool to get the private executor from, ignored if an executor
+     *                     is provided. A fixed-size executor is created if null.
+     * @param backPressure whether a channel with too much pending work should
+     *                     be throttled (see {@link ChannelN#applyConsumerBackPressure()})
+     *                     instead of blocking the connection
+     */
+    public ConsumerWorkService(ExecutorService executor, ThreadFactory threadFactory, int queueingTimeout, int shutdownTimeout,
+                               boolean virtualThreads, ConsumerDispatchPool dispatchPool, boolean backPressure) {
         this.privateExecutor = (executor == null);
-        this.executor = (executor == null) ? Executors.newFixedThreadPool(DEFAULT_NUM_THREADS, threadFactory)
+        this.executor = (executor == null) ? createPrivateExecutor(threadFactory, virtualThreads, dispatchPool)
                                            : executor;
-        this.workPool = new WorkPool<>(queueingTimeout);
+        this.workPool = new WorkPool<>(queueingTimeout, backPressure ? new ChannelBackPressure() : null);
         this.shutdownTimeout = shutdownTimeout;
     }
 
+    public ConsumerWorkService(ExecutorService executor, ThreadFactory threadFactory, int queueingTimeout, int shutdownTimeout,
+                               boolean virtualThreads, ConsumerDispatchPool dispatchPool) {
+        this(executor, threadFactory, queueingTimeout, shutdownTimeout, virtualThreads, dispatchPool, false);
+    }
+
+    public ConsumerWorkService(ExecutorService executor, ThreadFactory threadFactory, int queueingTimeout, int shutdownTimeout,
+                               boolean virtualThreads) {
+        this(executor, threadFactory, queueingTimeout, shutdownTimeout, virtualThreads, null);
+    }
+
+    public ConsumerWorkService(ExecutorService executor, ThreadFactory threadFactory, int queueingTimeout, int shutdownTimeout) {
+        this(executor, threadFactory, queueingTimeout, shutdownTimeout, false);
+    }
+
     public ConsumerWorkService(ExecutorService executor, ThreadFactory threadFactory, int shutdownTimeout) {
         this(executor, threadFactory, -1, shutdownTimeout);
     }
 
+    private static ExecutorService createPrivateExecutor(ThreadFactory threadFactory, boolean virtualThreads,
+                                                         ConsumerDispatchPool dispatchPool) {
+        if (dispatchPool != null) {
+            return dispatchPool.newConnectionExecutor();
+        }
+        if (virtualThreads) {
+            // one virtual thread per work block: a consumer blocked on I/O
+            // parks its own thread and does not hold back the other channels
+            ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor != null) {
+                return executor;
+            }
+            LOGGER.warn("Virtual threads are not supported by this JVM, " +
+                "falling back to a pool of {} platform threads for consumer dispatch", DEFAULT_NUM_THREADS);
+        }
+        return Executors.newFixedThreadPool(DEFAULT_NUM_THREADS, threadFactory);
+    }
+
     public int getShutdownTimeout() {
         return shutdownTimeout;
     }
@@ -52,6 +110,7 @@ final public class ConsumerWorkService {
      */
     public void shutdown() {
         this.workPool.unregisterAllKeys();
+        this.blockSizers.clear();
         if (privateExecutor)
             this.executor.shutdown();
     }
@@ -62,9 +121,11 @@ final public class ConsumerWorkService {
      */
     public void stopWork(Channel channel) {
         this.workPool.unregisterKey(channel);
+        this.blockSizers.remove(channel);
     }
 
     public void registerKey(Channel channel) {
+        this.blockSizers.computeIfAbsent(channel, c -> new WorkBlockSizer());
         this.workPool.registerKey(channel);
     }
 
@@ -76,6 +137,35 @@ final public class ConsumerWorkService {
         }
     }
 
+    public void setWeight(Channel channel, int weight) {
+        this.workPool.setWeight(channel, weight);
+    }
+
+    /**
+     * @param channel the channel
+     * @return how long work blocks of the channel waited for a thread,
+     * null if the channel is not registered
+     */
+    public LatencyHistogram getDispatchLatency(Channel channel) {
+        return this.workPool.getReadyLatency(channel);
+    }
+
+    /**
+     * @param channel the channel
+     * @return true if the channel has too much pending work, see {@link WorkPool#isOverloaded(Object)}
+     */
+    public boolean isOverloaded(Channel channel) {
+        return this.workPool.isOverloaded(channel);
+    }
+
+    /**
+     * @param channel the channel
+     * @return number of work items waiting for the channel
+     */
+    public int getQueueSize(Channel channel) {
+        return this.workPool.queueSize(channel);
+    }
+
     public void addWork(Channel channel, Runnable runnable) {
         if (this.workPool.addWorkItem(channel, runnable)) {
             this.executor.execute(new WorkPoolRunnable());
@@ -90,27 +180,72 @@ final public class ConsumerWorkService {
         return privateExecutor;
     }
 
+    private static final class ChannelBackPressure implements WorkPool.BackPressureListener<Channel> {
+
+        @Override
+        public void overloaded(Channel channel) {
+            apply(channel);
+        }
+
+        @Override
+        public void relieved(Channel channel) {
+            apply(channel);
+        }
+
+        private static void apply(Channel channel) {
+            if (channel instanceof ChannelN) {
+                ((ChannelN) channel).applyConsumerBackPressure();
+            }
+        }
+    }
+
     private final class WorkPoolRunnable implements Runnable {
 
         @Override
         public void run() {
-            int size = MAX_RUNNABLE_BLOCK_SIZE;
-            List<Runnable> block = new ArrayList<Runnable>(size);
+            // reused for all the blocks of this run
+            ArrayList<Runnable> block = new ArrayList<Runnable>(WorkBlockSizer.MIN_BLOCK_SIZE);
             try {
-                Channel key = ConsumerWorkService.this.workPool.nextWorkBlock(block, size);
-                if (key == null) return; // nothing ready to run
-                try {
-                    for (Runnable runnable : block) {
-                        runnable.run();
-                    }
-                } finally {
-                    if (ConsumerWorkService.this.workPool.finishWorkBlock(key)) {
-                        ConsumerWorkService.this.executor.execute(new WorkPoolRunnable());
+                // the client of a finished block is ready again if it has more work:
+                // keep going on this thread rather than resubmitting to the executor
+                for (int i = 0; i < MAX_BLOCKS_PER_RUN; i++) {
+                    if (!runBlock(block)) {
+                        return;
                     }
                 }
+                ConsumerWorkService.this.executor.execute(new WorkPoolRunnable());
             } catch (RuntimeException e) {
                 Thread.currentThread().interrupt();
             }
         }
+
+        /**
+         * @return true if the client of the block is ready again
+         */
+        private boolean runBlock(ArrayList<Runnable> block) {
+            block.clear();
+            Channel key = ConsumerWorkService.this.workPool.nextWorkBlock(block, blockSizer);
+            if (key == null) return false; // nothing ready to run
+            boolean completed = false;
+            boolean ready;
+            try {
+                long start = System.nanoTime();
+                for (Runnable runnable : block) {
+                    runnable.run();
+                }
+                completed = true;
+                WorkBlockSizer sizer = ConsumerWorkService.this.blockSizers.get(key);
+                if (sizer != null) {
+                    sizer.blockDone(block.size(), System.nanoTime() - start);
+                }
+            } finally {
+                ready = ConsumerWorkService.this.workPool.finishWorkBlock(key);
+                if (ready && !completed) {
+                    // the exception ends this run, another one takes over
+                    ConsumerWorkService.this.executor.execute(new WorkPoolRunnable());
+                }
+            }
+            return ready;
+        }
     }
 }
@@ -0,0 +1,103 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves the decoding of channel frames off the connection thread.
+ * <p>
+ * The connection thread only reads frames off the network and hands each frame
+ * to the lane of its channel. Decoding the methods and content headers, assembling
+ * the commands and processing them (e.g. enqueueing deliveries for consumers)
+ * then happen on the threads of an executor. A lane runs on one thread at a time
+ * and processes its frames in order, so the frames of a channel keep their order,
+ * while different channels can be decoded in parallel.
+ * <p>
+ * Frames of channel 0 (the connection) are still processed by the connection thread.
+ *
+ * @since 5.3.0
+ */
+final class FrameDecodingPipeline {
+
+    /** Frames a lane processes before handing its thread back to the executor. */
+    private static final int MAX_FRAMES_PER_RUN = 256;
+
+    private final AMQConnection connection;
+    private final ExecutorService executor;
+
+    FrameDecodingPipeline(AMQConnection connection, ExecutorService executor) {
+        this.connection = connection;
+        this.executor = executor;
+    }
+
+    /**
+     * Called by the connection thread.
+     */
+    void handleFrame(AMQChannel channel, Frame frame) {
+        Lane lane = channel.frameLane;
+        if (lane == null) {
+            // the connection thread is the only one to create lanes
+            lane = new Lane(channel);
+            channel.frameLane = lane;
+        }
+        lane.frames.offer(frame);
+        lane.schedule();
+    }
+
+    final class Lane implements Runnable {
+
+        private final AMQChannel channel;
+        private final ConcurrentLinkedQueue<Frame> frames = new ConcurrentLinkedQueue<Frame>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile boolean failed = false;
+
+        private Lane(AMQChannel channel) {
+            this.channel = channel;
+        }
+
+        private void schedule() {
+            if (!this.frames.isEmpty() && this.scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Frame frame;
+                int processed = 0;
+                while (processed < MAX_FRAMES_PER_RUN && (frame = this.frames.poll()) != null) {
+                    if (!this.failed) {
+                        this.channel.handleFrame(frame);
+                    }
+                    processed++;
+                }
+            } catch (Throwable e) {
+                // the connection would fail if this happened on its thread
+                this.failed = true;
+                this.frames.clear();
+                connection.handleIoError(e);
+            } finally {
+                // unscheduled, then check the frames: see handleFrame
+                this.scheduled.set(false);
+                schedule();
+            }
+        }
+    }
+}
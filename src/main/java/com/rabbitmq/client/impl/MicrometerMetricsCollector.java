@@ -18,12 +18,19 @@ package com.rabbitmq.client.impl;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.MetricsCollector;
+import com.rabbitmq.client.RecoveryPhase;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
@@ -57,6 +64,18 @@ public class MicrometerMetricsCollector extends AbstractMetricsCollector {
 
     private final Counter rejectedMessages;
 
+    private final Map<RecoveryPhase, Timer> recoveryPhases;
+
+    private final Timer channelLeaseWaits;
+
+    private final AtomicLong leasedChannels;
+
+    private final Counter prefetchIncreases;
+
+    private final Counter prefetchDecreases;
+
+    private final DistributionSummary prefetchCounts;
+
     public MicrometerMetricsCollector(MeterRegistry registry) {
         this(registry, "rabbitmq");
     }
@@ -81,6 +100,14 @@ public class MicrometerMetricsCollector extends AbstractMetricsCollector {
         this.acknowledgedMessages = (Counter) metricsCreator.apply(ACKNOWLEDGED_MESSAGES);
         this.rejectedMessages = (Counter) metricsCreator.apply(REJECTED_MESSAGES);
         this.failedToPublishMessages = (Counter) metricsCreator.apply(FAILED_TO_PUBLISH_MESSAGES);
+        @SuppressWarnings("unchecked")
+        Map<RecoveryPhase, Timer> recoveryPhases = (Map<RecoveryPhase, Timer>) metricsCreator.apply(RECOVERY_PHASES);
+        this.recoveryPhases = recoveryPhases;
+        this.channelLeaseWaits = (Timer) metricsCreator.apply(CHANNEL_LEASE_WAITS);
+        this.leasedChannels = (AtomicLong) metricsCreator.apply(LEASED_CHANNELS);
+        this.prefetchIncreases = (Counter) metricsCreator.apply(PREFETCH_INCREASES);
+        this.prefetchDecreases = (Counter) metricsCreator.apply(PREFETCH_DECREASES);
+        this.prefetchCounts = (DistributionSummary) metricsCreator.apply(PREFETCH_COUNTS);
     }
 
     @Override
@@ -128,6 +155,44 @@ public class MicrometerMetricsCollector extends AbstractMetricsCollector {
         rejectedMessages.increment();
     }
 
+    @Override
+    protected void markRecoveryPhase(RecoveryPhase phase, long durationInNanoseconds) {
+        // creation functions written before 5.3.0 may not know about recovery metrics
+        if (recoveryPhases != null) {
+            recoveryPhases.get(phase).record(durationInNanoseconds, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    protected void markChannelLeased(long waitTimeInNanoseconds) {
+        // creation functions written before 5.3.0 may not know about channel pool metrics
+        if (channelLeaseWaits != null) {
+            channelLeaseWaits.record(waitTimeInNanoseconds, TimeUnit.NANOSECONDS);
+        }
+        if (leasedChannels != null) {
+            leasedChannels.incrementAndGet();
+        }
+    }
+
+    @Override
+    protected void markChannelReleased() {
+        if (leasedChannels != null) {
+            leasedChannels.decrementAndGet();
+        }
+    }
+
+    @Override
+    protected void markPrefetchChanged(int previousPrefetch, int prefetch) {
+        // creation functions written before 5.3.0 may not know about prefetch metrics
+        Counter changes = prefetch > previousPrefetch ? prefetchIncreases : prefetchDecreases;
+        if (changes != null) {
+            changes.increment();
+        }
+        if (prefetchCounts != null) {
+            prefetchCounts.record(prefetch);
+        }
+    }
+
     public AtomicLong getConnections() {
         return connections;
     }
@@ -156,6 +221,30 @@ public class MicrometerMetricsCollector extends AbstractMetricsCollector {
         return rejectedMessages;
     }
 
+    public Timer getRecoveryPhase(RecoveryPhase phase) {
+        return recoveryPhases == null ? null : recoveryPhases.get(phase);
+    }
+
+    public Timer getChannelLeaseWaits() {
+        return channelLeaseWaits;
+    }
+
+    public AtomicLong getLeasedChannels() {
+        return leasedChannels;
+    }
+
+    public Counter getPrefetchIncreases() {
+        return prefetchIncreases;
+    }
+
+    public Counter getPrefetchDecreases() {
+        return prefetchDecreases;
+    }
+
+    public DistributionSummary getPrefetchCounts() {
+        return prefetchCounts;
+    }
+
     public enum Metrics {
         CONNECTIONS {
             @Override
@@ -198,6 +287,46 @@ public class MicrometerMetricsCollector extends AbstractMetricsCollector {
             Object create(MeterRegistry registry, String prefix, Iterable<Tag> tags) {
                 return registry.counter(prefix + ".failed_to_publish", tags);
             }
+        },
+        RECOVERY_PHASES {
+            @Override
+            Object create(MeterRegistry registry, String prefix, Iterable<Tag> tags) {
+                Map<RecoveryPhase, Timer> timers = new EnumMap<>(RecoveryPhase.class);
+                for (RecoveryPhase phase : RecoveryPhase.values()) {
+                    timers.put(phase, registry.timer(prefix + ".recovery." + phase.name().toLowerCase(Locale.ENGLISH), tags));
+                }
+                return timers;
+            }
+        },
+        CHANNEL_LEASE_WAITS {
+            @Override
+            Object create(MeterRegistry registry, String prefix, Iterable<Tag> tags) {
+                return registry.timer(prefix + ".channel_lease_wait", tags);
+            }
+        },
+        LEASED_CHANNELS {
+            @Override
+            Object create(MeterRegistry registry, String prefix, Iterable<Tag> tags) {
+                return registry.gauge(prefix + ".leased_channels", tags, new AtomicLong(0));
+            }
+        },
+        PREFETCH_INCREASES {
+            @Override
+            Object create(MeterRegistry registry, String prefix, Iterable<Tag> tags) {
+                return registry.counter(prefix + ".prefetch_increases", tags);
+            }
+        },
+        PREFETCH_DECREASES {
+            @Override
+            Object create(MeterRegistry registry, String prefix, Iterable<Tag> tags) {
+                return registry.counter(prefix + ".prefetch_decreases", tags);
+            }
+        },
+        PREFETCH_COUNTS {
+            @Override
+            Object create(MeterRegistry registry, String prefix, Iterable<Tag> tags) {
+                return registry.summary(prefix + ".prefetch", tags);
+            }
         };
 
         /**
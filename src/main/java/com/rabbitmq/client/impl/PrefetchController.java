@@ -0,0 +1,232 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adjusts the prefetch count of a channel to the rate at which its consumers
+ * process messages.
+ * <p>
+ * At most once per interval, on an acknowledgement, the controller looks at
+ * the number of unacknowledged messages and at the number of deliveries waiting
+ * in the channel work queue:
+ * <ul>
+ *     <li>if more than half of the prefetch count is waiting locally, the
+ *     consumers cannot keep up and the prefetch count is lowered;</li>
+ *     <li>if the prefetch window is (almost) full while little is waiting locally,
+ *     the messages are in flight or being processed: the window limits the throughput
+ *     and the prefetch count is raised;</li>
+ *     <li>otherwise the prefetch count is left as it is.</li>
+ * </ul>
+ * Each change is of a quarter of the current value at most, within the configured bounds,
+ * and is applied with a channel-wide <code>basic.qos</code> that is not waited for.
+ * Only consumers acknowledging messages manually are controlled.
+ * <p>
+ * The measurements and decisions are exposed through the getters of this class.
+ * Each change of the prefetch count is also reported to the
+ * {@link com.rabbitmq.client.MetricsCollector} of the connection.
+ *
+ * @see ChannelN#enableAdaptivePrefetch(int, int)
+ * @since 5.3.0
+ */
+public final class PrefetchController {
+
+    static final long DEFAULT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ChannelN channel;
+    private final int minPrefetch;
+    private final int maxPrefetch;
+    private final long intervalNanos;
+
+    private volatile int prefetch;
+
+    private final AtomicLong delivered = new AtomicLong(0);
+    private final AtomicLong acknowledged = new AtomicLong(0);
+    private final AtomicLong highestAcknowledgedTag = new AtomicLong(0);
+
+    /** Delivery tag timed for the acknowledgement latency, -1 if none. */
+    private final AtomicLong sampledTag = new AtomicLong(-1);
+    private volatile long sampledAtNanos;
+
+    /** Only one thread evaluates at a time, the fields below are guarded by this flag. */
+    private final AtomicBoolean evaluating = new AtomicBoolean(false);
+    private volatile long lastEvaluationNanos;
+    private long lastAcknowledged;
+
+    private volatile double acknowledgementRate;
+    private volatile long acknowledgementLatencyNanos;
+    private volatile long unacknowledged;
+    private volatile int queueDepth;
+    private final AtomicLong increases = new AtomicLong(0);
+    private final AtomicLong decreases = new AtomicLong(0);
+
+    PrefetchController(ChannelN channel, int minPrefetch, int maxPrefetch, int initialPrefetch, long intervalNanos) {
+        if (minPrefetch < 1 || maxPrefetch < minPrefetch || maxPrefetch > 65535) {
+            throw new IllegalArgumentException("Prefetch bounds must verify 1 <= min <= max <= 65535: " +
+                minPrefetch + ", " + maxPrefetch);
+        }
+        this.channel = channel;
+        this.minPrefetch = minPrefetch;
+        this.maxPrefetch = maxPrefetch;
+        this.intervalNanos = intervalNanos;
+        this.prefetch = Math.max(minPrefetch, Math.min(maxPrefetch, initialPrefetch));
+        this.lastEvaluationNanos = System.nanoTime();
+    }
+
+    /**
+     * Called by the connection thread for each delivery.
+     */
+    void delivered(long deliveryTag) {
+        this.delivered.incrementAndGet();
+        // the connection thread is the only one to start a sample
+        if (this.sampledTag.get() == -1) {
+            this.sampledAtNanos = System.nanoTime();
+            this.sampledTag.set(deliveryTag);
+        }
+    }
+
+    /**
+     * Called when messages are acknowledged, rejected or nacked.
+     */
+    void acknowledged(long deliveryTag, boolean multiple) {
+        long previous = this.highestAcknowledgedTag.getAndAccumulate(deliveryTag, Math::max);
+        // approximate with multiple: messages may have been acknowledged one by one in between
+        this.acknowledged.addAndGet(multiple ? Math.max(0, deliveryTag - previous) : 1);
+
+        long now = System.nanoTime();
+        long sampled = this.sampledTag.get();
+        if (sampled != -1 && (multiple ? deliveryTag >= sampled : deliveryTag == sampled)) {
+            long latency = now - this.sampledAtNanos;
+            if (this.sampledTag.compareAndSet(sampled, -1)) {
+                long average = this.acknowledgementLatencyNanos;
+                this.acknowledgementLatencyNanos = average == 0 ? latency : average + (latency - average) / 4;
+            }
+        }
+        if (now - this.lastEvaluationNanos >= this.intervalNanos && this.evaluating.compareAndSet(false, true)) {
+            try {
+                evaluate(now);
+            } finally {
+                this.evaluating.set(false);
+            }
+        }
+    }
+
+    private void evaluate(long now) {
+        long acknowledgedNow = this.acknowledged.get();
+        double elapsedSeconds = (now - this.lastEvaluationNanos) / 1_000_000_000.0;
+        this.acknowledgementRate = (acknowledgedNow - this.lastAcknowledged) / elapsedSeconds;
+        this.lastAcknowledged = acknowledgedNow;
+        this.lastEvaluationNanos = now;
+
+        long unacknowledgedNow = Math.max(0, this.delivered.get() - acknowledgedNow);
+        int depth = this.channel.getConsumerWorkQueueSize();
+        this.unacknowledged = unacknowledgedNow;
+        this.queueDepth = depth;
+
+        int current = this.prefetch;
+        int next = nextPrefetch(current, depth, unacknowledgedNow, this.minPrefetch, this.maxPrefetch);
+        if (next != current && this.channel.applyAdaptivePrefetch(next)) {
+            this.prefetch = next;
+            (next > current ? this.increases : this.decreases).incrementAndGet();
+            this.channel.metricsCollector.prefetchChanged(this.channel, current, next);
+        }
+    }
+
+    static int nextPrefetch(int prefetch, int queueDepth, long unacknowledged, int minPrefetch, int maxPrefetch) {
+        int step = Math.max(1, prefetch / 4);
+        if (queueDepth > prefetch / 2) {
+            return Math.max(minPrefetch, prefetch - step);
+        }
+        if (unacknowledged >= prefetch - Math.max(1, prefetch / 10) && queueDepth <= prefetch / 4) {
+            return Math.min(maxPrefetch, prefetch + step);
+        }
+        return prefetch;
+    }
+
+    /**
+     * @return the prefetch count currently set on the channel
+     */
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    public int getMinPrefetch() {
+        return minPrefetch;
+    }
+
+    public int getMaxPrefetch() {
+        return maxPrefetch;
+    }
+
+    /**
+     * @return messages acknowledged per second during the last interval
+     */
+    public double getAcknowledgementRate() {
+        return acknowledgementRate;
+    }
+
+    /**
+     * @param unit unit of the returned value
+     * @return moving average of the time between a delivery and its acknowledgement
+     */
+    public long getAcknowledgementLatency(TimeUnit unit) {
+        return unit.convert(acknowledgementLatencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return number of unacknowledged messages at the last evaluation
+     */
+    public long getUnacknowledged() {
+        return unacknowledged;
+    }
+
+    /**
+     * @return number of deliveries waiting for the consumers at the last evaluation
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return how many times the prefetch count was raised
+     */
+    public long getIncreases() {
+        return increases.get();
+    }
+
+    /**
+     * @return how many times the prefetch count was lowered
+     */
+    public long getDecreases() {
+        return decreases.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchController{" +
+            "prefetch=" + prefetch +
+            ", acknowledgementRate=" + acknowledgementRate +
+            ", acknowledgementLatencyMs=" + getAcknowledgementLatency(TimeUnit.MILLISECONDS) +
+            ", unacknowledged=" + unacknowledged +
+            ", queueDepth=" + queueDepth +
+            ", increases=" + increases +
+            ", decreases=" + decreases +
+            '}';
+    }
+}
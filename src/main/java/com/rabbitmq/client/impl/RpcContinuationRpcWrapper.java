@@ -24,10 +24,25 @@ public class RpcContinuationRpcWrapper implements RpcWrapper {
 
     private final AMQChannel.RpcContinuation continuation;
 
+    /** Set when the caller stopped waiting, e.g. after a timeout */
+    private volatile boolean abandoned = false;
+
     public RpcContinuationRpcWrapper(AMQChannel.RpcContinuation continuation) {
         this.continuation = continuation;
     }
 
+    AMQChannel.RpcContinuation getContinuation() {
+        return continuation;
+    }
+
+    void abandon() {
+        this.abandoned = true;
+    }
+
+    boolean isAbandoned() {
+        return abandoned;
+    }
+
     @Override
     public boolean canHandleReply(AMQCommand command) {
         return continuation.canHandleReply(command);
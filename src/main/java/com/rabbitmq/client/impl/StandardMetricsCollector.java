@@ -16,11 +16,19 @@
 package com.rabbitmq.client.impl;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.MetricsCollector;
+import com.rabbitmq.client.RecoveryPhase;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dropwizard Metrics implementation of {@link MetricsCollector}.
@@ -42,7 +50,12 @@ public class StandardMetricsCollector extends AbstractMetricsCollector {
     private final Meter acknowledgedMessages;
     private final Meter rejectedMessages;
     private final Meter failedToPublishMessages;
-
+    private final Map<RecoveryPhase, Timer> recoveryPhases = new EnumMap<RecoveryPhase, Timer>(RecoveryPhase.class);
+    private final Timer channelLeaseWaits;
+    private final Counter leasedChannels;
+    private final Meter prefetchIncreases;
+    private final Meter prefetchDecreases;
+    private final Histogram prefetchCounts;
 
     public StandardMetricsCollector(MetricRegistry registry, String metricsPrefix) {
         this.registry = registry;
@@ -53,6 +66,14 @@ public class StandardMetricsCollector extends AbstractMetricsCollector {
         this.consumedMessages = registry.meter(metricsPrefix+".consumed");
         this.acknowledgedMessages = registry.meter(metricsPrefix+".acknowledged");
         this.rejectedMessages = registry.meter(metricsPrefix+".rejected");
+        this.channelLeaseWaits = registry.timer(metricsPrefix+".channel_lease_wait");
+        this.leasedChannels = registry.counter(metricsPrefix+".leased_channels");
+        this.prefetchIncreases = registry.meter(metricsPrefix+".prefetch_increases");
+        this.prefetchDecreases = registry.meter(metricsPrefix+".prefetch_decreases");
+        this.prefetchCounts = registry.histogram(metricsPrefix+".prefetch");
+        for (RecoveryPhase phase : RecoveryPhase.values()) {
+            this.recoveryPhases.put(phase, registry.timer(metricsPrefix+".recovery."+phase.name().toLowerCase(Locale.ENGLISH)));
+        }
     }
 
     public StandardMetricsCollector() {
@@ -108,6 +129,28 @@ public class StandardMetricsCollector extends AbstractMetricsCollector {
         rejectedMessages.mark();
     }
 
+    @Override
+    protected void markRecoveryPhase(RecoveryPhase phase, long durationInNanoseconds) {
+        recoveryPhases.get(phase).update(durationInNanoseconds, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    protected void markChannelLeased(long waitTimeInNanoseconds) {
+        channelLeaseWaits.update(waitTimeInNanoseconds, TimeUnit.NANOSECONDS);
+        leasedChannels.inc();
+    }
+
+    @Override
+    protected void markChannelReleased() {
+        leasedChannels.dec();
+    }
+
+    @Override
+    protected void markPrefetchChanged(int previousPrefetch, int prefetch) {
+        (prefetch > previousPrefetch ? prefetchIncreases : prefetchDecreases).mark();
+        prefetchCounts.update(prefetch);
+    }
+
 
     
     public MetricRegistry getMetricRegistry() {
@@ -141,4 +184,28 @@ public class StandardMetricsCollector extends AbstractMetricsCollector {
     public Meter getFailedToPublishMessages() {
         return failedToPublishMessages;
     }
+
+    public Timer getRecoveryPhase(RecoveryPhase phase) {
+        return recoveryPhases.get(phase);
+    }
+
+    public Timer getChannelLeaseWaits() {
+        return channelLeaseWaits;
+    }
+
+    public Counter getLeasedChannels() {
+        return leasedChannels;
+    }
+
+    public Meter getPrefetchIncreases() {
+        return prefetchIncreases;
+    }
+
+    public Meter getPrefetchDecreases() {
+        return prefetchDecreases;
+    }
+
+    public Histogram getPrefetchCounts() {
+        return prefetchCounts;
+    }
 }
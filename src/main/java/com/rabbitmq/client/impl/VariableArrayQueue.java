@@ -0,0 +1,238 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded blocking FIFO queue backed by a circular array, used for the
+ * per-client work queues of {@link WorkPool}.
+ * <p>
+ * Unlike {@link java.util.concurrent.ArrayBlockingQueue}, the capacity can
+ * be changed while the queue is in use with {@link #setCapacity(int)}, and
+ * the array grows on demand, so a queue with a very large capacity only
+ * takes the memory it needs. No node is allocated per item.
+ * <p>
+ * Only the operations {@link WorkPool} needs are implemented.
+ * Producers and consumers share a single lock, the emptiness check
+ * does not take it.
+ * @param <E> the type of elements held in this queue
+ */
+final class VariableArrayQueue<E> {
+
+    private static final int INITIAL_ARRAY_SIZE = 16;
+    /**
+     * Number of times in a row the queue must drain with at most a quarter
+     * of the array used before the array shrinks.
+     */
+    private static final int SHRINK_AFTER_DRAINS = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+
+    /** Circular buffer, its length is always a power of 2. */
+    private Object[] items = new Object[INITIAL_ARRAY_SIZE];
+    /** Index of the head of the queue in the buffer. */
+    private int head = 0;
+    /** Number of items in the queue, only modified with the lock held. */
+    private volatile int count = 0;
+    private int capacity;
+    /** Highest number of items since the queue last drained. */
+    private int peak = 0;
+    /** Highest peak of the last drains with a small peak, and the number of these drains. */
+    private int smallPeak = 0;
+    private int smallDrains = 0;
+
+    VariableArrayQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+    }
+
+    /**
+     * Set a new capacity for the queue. Decreasing the capacity below the current
+     * number of items does not remove any item, it only prevents adding new ones.
+     * @param capacity the new capacity for the queue
+     */
+    void setCapacity(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        lock.lock();
+        try {
+            this.capacity = capacity;
+            if (count < capacity) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the item at the tail of the queue, waiting if necessary
+     * for space to become available.
+     */
+    void put(E e) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        lock.lockInterruptibly();
+        try {
+            while (count >= capacity) {
+                notFull.await();
+            }
+            enqueue(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the item at the tail of the queue, waiting up to the
+     * specified wait time if necessary for space to become available.
+     * @return true if successful, false if the specified waiting time elapses before space is available
+     */
+    boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the head of the queue, or null if the queue is empty
+     */
+    E poll() {
+        if (count == 0) {
+            return null;
+        }
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes at most the given number of items and adds them to the given collection.
+     * @return the number of items transferred
+     */
+    int drainTo(Collection<? super E> c, int maxElements) {
+        if (count == 0) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            int n = Math.min(maxElements, count);
+            for (int i = 0; i < n; i++) {
+                c.add(dequeue());
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /** For tests. */
+    int arrayLength() {
+        lock.lock();
+        try {
+            return items.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(E e) {
+        if (count == items.length) {
+            grow();
+        }
+        items[(head + count) & (items.length - 1)] = e;
+        count++;
+        if (count > peak) {
+            peak = count;
+        }
+    }
+
+    private E dequeue() {
+        @SuppressWarnings("unchecked")
+        E e = (E) items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        count--;
+        if (count == 0) {
+            head = 0;
+            drained();
+        }
+        if (count < capacity) {
+            notFull.signal();
+        }
+        return e;
+    }
+
+    /**
+     * Give back the memory taken by a burst once the queue has stayed
+     * well below the array size for a while. Shrinking on every drain
+     * would reallocate the array over and over with a bursty workload.
+     */
+    private void drained() {
+        if (items.length > INITIAL_ARRAY_SIZE && peak <= items.length >> 2) {
+            smallPeak = Math.max(smallPeak, peak);
+            if (++smallDrains >= SHRINK_AFTER_DRAINS) {
+                // twice the recent high-water mark, at most half the current size
+                int length = INITIAL_ARRAY_SIZE;
+                while (length < smallPeak << 1) {
+                    length <<= 1;
+                }
+                items = new Object[length];
+                smallPeak = 0;
+                smallDrains = 0;
+            }
+        } else {
+            smallPeak = 0;
+            smallDrains = 0;
+        }
+        peak = 0;
+    }
+
+    private void grow() {
+        Object[] newItems = new Object[items.length << 1];
+        int firstPart = Math.min(count, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, count - firstPart);
+        items = newItems;
+        head = 0;
+    }
+}
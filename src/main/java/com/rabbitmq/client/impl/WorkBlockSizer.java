@@ -0,0 +1,69 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+/**
+ * Chooses how many work items of a channel to run in one block.
+ * <p>
+ * Blocks are sized so that running one takes about {@link #TARGET_BLOCK_NANOS},
+ * based on a moving average of the duration of the channel callbacks.
+ * A channel with a backlog of fast callbacks is thus drained in large blocks,
+ * with few trips through the executor, while a block never holds a dispatch
+ * thread long enough to delay the other channels noticeably.
+ * <p>
+ * Not thread-safe: a channel has at most one block in progress at a time,
+ * see {@link WorkPool}.
+ *
+ * @since 5.3.0
+ */
+final class WorkBlockSizer {
+
+    static final int MIN_BLOCK_SIZE = 16;
+    static final int MAX_BLOCK_SIZE = 256;
+    static final long TARGET_BLOCK_NANOS = 1_000_000L;
+
+    /** Moving average of the duration of a work item, 0 until a block has run. */
+    private volatile long averageItemNanos = 0;
+
+    /**
+     * @param queued number of items waiting for the channel
+     * @return the max number of items for the next block
+     */
+    int blockSize(int queued) {
+        if (queued <= MIN_BLOCK_SIZE) {
+            return MIN_BLOCK_SIZE;
+        }
+        long average = averageItemNanos;
+        long size = average == 0 ? MIN_BLOCK_SIZE : TARGET_BLOCK_NANOS / average;
+        size = Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
+        return (int) Math.min(size, queued);
+    }
+
+    /**
+     * Records the duration of a block.
+     * @param items number of items in the block
+     * @param elapsedNanos time it took to run them
+     */
+    void blockDone(int items, long elapsedNanos) {
+        if (items == 0) {
+            return;
+        }
+        long itemNanos = Math.max(1, elapsedNanos / items);
+        long average = averageItemNanos;
+        // exponentially weighted, each block counts for 1/4
+        averageItemNanos = average == 0 ? itemNanos : average + (itemNanos - average) / 4;
+    }
+}
@@ -16,12 +16,13 @@
 package com.rabbitmq.client.impl;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 
 /**
@@ -49,24 +50,78 @@ import java.util.function.BiConsumer;
  * All clients may be unregistered with <code><b>unregisterAllKeys()</b></code>.
  * <h2>Concurrent Semantics</h2>
  * This implementation is thread-safe.
+ * <p>
+ * There is no global lock on the work paths: the state of each client is changed
+ * with atomic compare-and-set operations and the <i>ready</i> clients are kept in a
+ * lock-free queue. A client is put in this queue only by the thread that made it
+ * <i>ready</i>, so it appears in the queue at most once and its items are
+ * processed by one thread at a time, in order.
+ * <h2>Scheduling</h2>
+ * Each client has a <i>weight</i> (1 by default, see {@link #setWeight(Object, int)}).
+ * A work block transfers up to <i>weight</i> times the requested number of items,
+ * so a busy client with a higher weight gets a proportionally larger share of
+ * the processing.
+ * <p>
+ * <i>Ready</i> clients are served in turn, in the order they became <i>ready</i>,
+ * with one exception: a <i>dormant</i> client with a weight above 1 that becomes
+ * <i>ready</i> because of a new item goes in a priority queue, served before the
+ * others. A client with little work and a higher weight (e.g. a critical
+ * consumer) thus waits for the next block instead of one block of each
+ * <i>ready</i> client. To prevent starvation, no two turns in a row are taken
+ * from the priority queue (unless nothing else is <i>ready</i>), and a client
+ * that still has items after its block goes back in the regular queue.
+ * <p>
+ * The time each client spends <i>ready</i> before it is served is recorded
+ * in a {@link LatencyHistogram}, see {@link #getReadyLatency(Object)}.
+ * <h2>Back-pressure</h2>
+ * By default, the queue of a client is bounded and adding an item to a full queue
+ * blocks (or times out). If a {@link BackPressureListener} is set, queues are not
+ * bounded and adding never blocks: instead, the listener is told when the queue of
+ * a client goes over {@link #HIGH_WATER_MARK} items, and again when it has been
+ * processed down to {@link #LOW_WATER_MARK} items, so that it can stop and resume
+ * the flow of items for this client only.
  * @param <K> Key -- type of client
  * @param <W> Work -- type of work item
  */
 public class WorkPool<K, W> {
     private static final int MAX_QUEUE_LENGTH = 1000;
+    static final int MAX_WEIGHT = 100;
+    static final int HIGH_WATER_MARK = MAX_QUEUE_LENGTH;
+    static final int LOW_WATER_MARK = HIGH_WATER_MARK / 4;
 
-    /** An injective queue of <i>ready</i> clients. */
-    private final SetQueue<K> ready = new SetQueue<K>();
-    /** The set of clients which have work <i>in progress</i>. */
-    private final Set<K> inProgress = new HashSet<K>();
+    private static final int DORMANT = 0;
+    private static final int READY = 1;
+    private static final int IN_PROGRESS = 2;
+    private static final int UNREGISTERED = 3;
+
+    /** A queue of <i>ready</i> clients. A client is never present twice (see {@link Client#state}). */
+    private final ConcurrentLinkedQueue<Client<K, W>> ready = new ConcurrentLinkedQueue<Client<K, W>>();
+    /** <i>Ready</i> clients with a weight above 1 that were <i>dormant</i>, served first. */
+    private final ConcurrentLinkedQueue<Client<K, W>> priorityReady = new ConcurrentLinkedQueue<Client<K, W>>();
+    /** Whether the last turn was taken from {@link #priorityReady}, approximate with several threads. */
+    private volatile boolean lastTurnPriority = false;
     /** The pool of registered clients, with their work queues. */
-    private final Map<K, VariableLinkedBlockingQueue<W>> pool = new HashMap<K, VariableLinkedBlockingQueue<W>>();
+    private final Map<K, Client<K, W>> pool = new ConcurrentHashMap<K, Client<K, W>>();
     /** Those keys which want limits to be removed. We do not limit queue size if this is non-empty. */
-    private final Set<K> unlimited = new HashSet<K>();
-    private final BiConsumer<VariableLinkedBlockingQueue<W>, W> enqueueingCallback;
+    private final Set<K> unlimited = ConcurrentHashMap.newKeySet();
+    private final BiConsumer<VariableArrayQueue<W>, W> enqueueingCallback;
+    private final BackPressureListener<K> backPressureListener;
+    /** Capacity of the queues when no client is unlimited. */
+    private final int limitedCapacity;
 
     public WorkPool(final int queueingTimeout) {
-        if (queueingTimeout > 0) {
+        this(queueingTimeout, null);
+    }
+
+    /**
+     * @param queueingTimeout timeout in ms to add an item to a full queue, ignored
+     *                        with a back-pressure listener
+     * @param backPressureListener listener for queues going over the high-water mark, can be null
+     */
+    public WorkPool(final int queueingTimeout, BackPressureListener<K> backPressureListener) {
+        this.backPressureListener = backPressureListener;
+        this.limitedCapacity = backPressureListener == null ? MAX_QUEUE_LENGTH : Integer.MAX_VALUE;
+        if (queueingTimeout > 0 && backPressureListener == null) {
             this.enqueueingCallback = (queue, item) -> {
                 try {
                     boolean offered = queue.offer(item, queueingTimeout, TimeUnit.MILLISECONDS);
@@ -95,58 +150,106 @@ public class WorkPool<K, W> {
      * @param key client to add to pool
      */
     public void registerKey(K key) {
-        synchronized (this) {
+        // the capacity must be consistent with concurrent (un)limit calls
+        synchronized (this.unlimited) {
             if (!this.pool.containsKey(key)) {
-                int initialCapacity = unlimited.isEmpty() ? MAX_QUEUE_LENGTH : Integer.MAX_VALUE;
-                this.pool.put(key, new VariableLinkedBlockingQueue<W>(initialCapacity));
+                int initialCapacity = unlimited.isEmpty() ? limitedCapacity : Integer.MAX_VALUE;
+                this.pool.put(key, new Client<K, W>(key, new VariableArrayQueue<W>(initialCapacity)));
             }
         }
     }
 
-    public synchronized void limit(K key) {
-        unlimited.remove(key);
-        if (unlimited.isEmpty()) {
-            setCapacities(MAX_QUEUE_LENGTH);
+    public void limit(K key) {
+        synchronized (this.unlimited) {
+            unlimited.remove(key);
+            if (unlimited.isEmpty()) {
+                setCapacities(limitedCapacity);
+            }
         }
     }
 
-    public synchronized void unlimit(K key) {
-        unlimited.add(key);
-        if (!unlimited.isEmpty()) {
-            setCapacities(Integer.MAX_VALUE);
+    public void unlimit(K key) {
+        synchronized (this.unlimited) {
+            unlimited.add(key);
+            if (!unlimited.isEmpty()) {
+                setCapacities(Integer.MAX_VALUE);
+            }
         }
     }
 
     private void setCapacities(int capacity) {
-        Iterator<VariableLinkedBlockingQueue<W>> it = pool.values().iterator();
-        while (it.hasNext()) {
-            it.next().setCapacity(capacity);
+        for (Client<K, W> client : pool.values()) {
+            client.queue.setCapacity(capacity);
         }
     }
 
+    /**
+     * Set the scheduling weight of a client.
+     * No-op if <code><b>key</b></code> is not registered.
+     * @param key client to set the weight of
+     * @param weight between 1 and {@value #MAX_WEIGHT}
+     */
+    public void setWeight(K key, int weight) {
+        if (weight < 1 || weight > MAX_WEIGHT) {
+            throw new IllegalArgumentException("Weight must be between 1 and " + MAX_WEIGHT + ": " + weight);
+        }
+        Client<K, W> client = this.pool.get(key);
+        if (client != null) {
+            client.weight = weight;
+        }
+    }
+
+    /**
+     * @param key client
+     * @return the latencies between the client becoming <i>ready</i> and being
+     * <i>in progress</i>, null if <code><b>key</b></code> is not registered
+     */
+    public LatencyHistogram getReadyLatency(K key) {
+        Client<K, W> client = this.pool.get(key);
+        return client == null ? null : client.readyLatency;
+    }
+
+    /**
+     * @param key client
+     * @return number of items queued for the client, 0 if <code><b>key</b></code> is not registered
+     */
+    public int queueSize(K key) {
+        Client<K, W> client = this.pool.get(key);
+        return client == null ? 0 : client.queue.size();
+    }
+
+    /**
+     * @param key client
+     * @return true if the queue of the client went over the high-water mark
+     * and is not back to the low-water mark yet
+     */
+    public boolean isOverloaded(K key) {
+        Client<K, W> client = this.pool.get(key);
+        return client != null && client.overloaded.get();
+    }
+
     /**
      * Remove client from pool and from any other state. Has no effect if client already absent.
      * @param key of client to unregister
      */
     public void unregisterKey(K key) {
-        synchronized (this) {
-            this.pool.remove(key);
-            this.ready.remove(key);
-            this.inProgress.remove(key);
-            this.unlimited.remove(key);
+        Client<K, W> client = this.pool.remove(key);
+        if (client != null) {
+            // a ready client stays in the ready queue, it is skipped when polled
+            client.state.set(UNREGISTERED);
         }
+        this.unlimited.remove(key);
     }
 
     /**
      * Remove all clients from pool and from any other state.
      */
     public void unregisterAllKeys() {
-        synchronized (this) {
-            this.pool.clear();
-            this.ready.clear();
-            this.inProgress.clear();
-            this.unlimited.clear();
+        for (K key : this.pool.keySet()) {
+            unregisterKey(key);
         }
+        this.ready.clear();
+        this.priorityReady.clear();
     }
 
     /**
@@ -155,37 +258,32 @@ public class WorkPool<K, W> {
      * Mark client <i>in progress</i>.
      * If there is no <i>ready</i> client, return <code><b>null</b></code>.
      * @param to collection object in which to transfer items
-     * @param size max number of items to transfer
+     * @param size max number of items to transfer, multiplied by the weight of the client
      * @return key of client to whom items belong, or <code><b>null</b></code> if there is none.
      */
     public K nextWorkBlock(Collection<W> to, int size) {
-        synchronized (this) {
-            K nextKey = readyToInProgress();
-            if (nextKey != null) {
-                VariableLinkedBlockingQueue<W> queue = this.pool.get(nextKey);
-                drainTo(queue, to, size);
-            }
-            return nextKey;
+        Client<K, W> client = readyToInProgress();
+        if (client != null) {
+            client.queue.drainTo(to, quantum(client, size));
+            return client.key;
         }
+        return null;
     }
 
     /**
-     * Private implementation of <code><b>drainTo</b></code> (not implemented for <code><b>LinkedList&lt;W&gt;</b></code>s).
-     * @param deList to take (poll) elements from
-     * @param c to add elements to
-     * @param maxElements to take from deList
-     * @return number of elements actually taken
+     * Same as {@link #nextWorkBlock(Collection, int)}, with the number of items
+     * to transfer chosen for the client once it is known.
+     * @param to collection object in which to transfer items
+     * @param blockSizer gives the max number of items to transfer, multiplied by the weight of the client
+     * @return key of client to whom items belong, or <code><b>null</b></code> if there is none.
      */
-    private int drainTo(VariableLinkedBlockingQueue<W> deList, Collection<W> c, int maxElements) {
-        int n = 0;
-        while (n < maxElements) {
-            W first = deList.poll();
-            if (first == null)
-                break;
-            c.add(first);
-            ++n;
+    public K nextWorkBlock(Collection<W> to, BlockSizer<K> blockSizer) {
+        Client<K, W> client = readyToInProgress();
+        if (client != null) {
+            client.queue.drainTo(to, quantum(client, blockSizer.blockSize(client.key, client.queue.size())));
+            return client.key;
         }
-        return n;
+        return null;
     }
 
     /**
@@ -198,20 +296,18 @@ public class WorkPool<K, W> {
      * &mdash; <i>as a result of this work item</i>
      */
     public boolean addWorkItem(K key, W item) {
-        VariableLinkedBlockingQueue<W> queue;
-        synchronized (this) {
-            queue = this.pool.get(key);
-        }
-        // The put operation may block. We need to make sure we are not holding the lock while that happens.
-        if (queue != null) {
-            enqueueingCallback.accept(queue, item);
-
-            synchronized (this) {
-                if (isDormant(key)) {
-                    dormantToReady(key);
-                    return true;
-                }
+        Client<K, W> client = this.pool.get(key);
+        // The put operation may block. We make sure no other client is held up while that happens.
+        if (client != null) {
+            enqueueingCallback.accept(client.queue, item);
+            if (this.backPressureListener != null && client.queue.size() >= HIGH_WATER_MARK
+                && client.overloaded.compareAndSet(false, true)) {
+                this.backPressureListener.overloaded(key);
             }
+            // the item is enqueued before the state is read: if the client is
+            // being finished concurrently, either we see it dormant or
+            // finishWorkBlock sees the item
+            return dormantToReady(client, client.weight > 1);
         }
         return false;
     }
@@ -224,46 +320,122 @@ public class WorkPool<K, W> {
      * @throws IllegalStateException if registered client not <i>in progress</i>
      */
     public boolean finishWorkBlock(K key) {
-        synchronized (this) {
-            if (!this.isRegistered(key))
+        Client<K, W> client = this.pool.get(key);
+        if (client == null)
+            return false;
+        if (!client.state.compareAndSet(IN_PROGRESS, DORMANT)) {
+            if (client.state.get() == UNREGISTERED) {
                 return false;
-            if (!this.inProgress.contains(key)) {
-                throw new IllegalStateException("Client " + key + " not in progress");
             }
+            throw new IllegalStateException("Client " + key + " not in progress");
+        }
+        if (this.backPressureListener != null && client.queue.size() <= LOW_WATER_MARK
+            && client.overloaded.compareAndSet(true, false)) {
+            this.backPressureListener.relieved(key);
+        }
+        // the client is dormant before the queue is read, see addWorkItem
+        if (!client.queue.isEmpty()) {
+            return dormantToReady(client, false);
+        }
+        return false;
+    }
 
-            if (moreWorkItems(key)) {
-                inProgressToReady(key);
-                return true;
-            } else {
-                inProgressToDormant(key);
-                return false;
+    private static int quantum(Client<?, ?> client, int size) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) size * client.weight);
+    }
+
+    /* State transition methods */
+    private boolean dormantToReady(Client<K, W> client, boolean priority) {
+        if (client.state.compareAndSet(DORMANT, READY)) {
+            client.readySince = System.nanoTime();
+            (priority ? this.priorityReady : this.ready).offer(client);
+            return true;
+        }
+        return false;
+    }
+
+    /* Basic work selector and state transition step */
+    private Client<K, W> readyToInProgress() {
+        Client<K, W> client;
+        if (!this.lastTurnPriority && (client = readyToInProgress(this.priorityReady)) != null) {
+            this.lastTurnPriority = true;
+            return client;
+        }
+        if ((client = readyToInProgress(this.ready)) != null) {
+            this.lastTurnPriority = false;
+            return client;
+        }
+        // nothing else is ready
+        return readyToInProgress(this.priorityReady);
+    }
+
+    private Client<K, W> readyToInProgress(ConcurrentLinkedQueue<Client<K, W>> queue) {
+        Client<K, W> client;
+        while ((client = queue.poll()) != null) {
+            if (client.state.compareAndSet(READY, IN_PROGRESS)) {
+                client.readyLatency.record(System.nanoTime() - client.readySince);
+                return client;
             }
+            // unregistered in the meantime, skip it
         }
+        return null;
+    }
+
+    /**
+     * Chooses the size of a work block.
+     * @param <K> Key -- type of client
+     */
+    @FunctionalInterface
+    public interface BlockSizer<K> {
+
+        /**
+         * @param key client the block is for
+         * @param queued number of items the client has queued
+         * @return max number of items to put in the block
+         */
+        int blockSize(K key, int queued);
     }
 
-    private boolean moreWorkItems(K key) {
-        VariableLinkedBlockingQueue<W> leList = this.pool.get(key);
-        return leList != null && !leList.isEmpty();
+    /**
+     * Told when the queue of a client goes over the high-water mark
+     * and when it is back to the low-water mark.
+     * Calls for a given client can come from different threads and overlap,
+     * {@link #isOverloaded(Object)} gives the latest state.
+     * @param <K> Key -- type of client
+     */
+    public interface BackPressureListener<K> {
+
+        /**
+         * Called by the thread adding an item, the queue of the client has
+         * {@link #HIGH_WATER_MARK} items or more.
+         * @param key client
+         */
+        void overloaded(K key);
+
+        /**
+         * Called by the thread finishing a work block, the queue of the client is back to
+         * {@link #LOW_WATER_MARK} items or less.
+         * @param key client
+         */
+        void relieved(K key);
     }
 
-    /* State identification functions */
-    private boolean isInProgress(K key){ return this.inProgress.contains(key); }
-    private boolean isReady(K key){ return this.ready.contains(key); }
-    private boolean isRegistered(K key) { return this.pool.containsKey(key); }
-    private boolean isDormant(K key){ return !isInProgress(key) && !isReady(key) && isRegistered(key); }
+    private static final class Client<K, W> {
 
-    /* State transition methods - all assume key registered */
-    private void inProgressToReady(K key){ this.inProgress.remove(key); this.ready.addIfNotPresent(key); }
-    private void inProgressToDormant(K key){ this.inProgress.remove(key); }
-    private void dormantToReady(K key){ this.ready.addIfNotPresent(key); }
+        private final K key;
+        private final VariableArrayQueue<W> queue;
+        /** One of {@link #DORMANT}, {@link #READY}, {@link #IN_PROGRESS}, {@link #UNREGISTERED}. */
+        private final AtomicInteger state = new AtomicInteger(DORMANT);
+        private final LatencyHistogram readyLatency = new LatencyHistogram();
+        private volatile int weight = 1;
+        private final AtomicBoolean overloaded = new AtomicBoolean(false);
+        /** Set before the client is put in the ready queue, read after it is taken out. */
+        private long readySince;
 
-    /* Basic work selector and state transition step */
-    private K readyToInProgress() {
-        K key = this.ready.poll();
-        if (key != null) {
-            this.inProgress.add(key);
+        private Client(K key, VariableArrayQueue<W> queue) {
+            this.key = key;
+            this.queue = queue;
         }
-        return key;
     }
 
 }
@@ -17,11 +17,16 @@ package com.rabbitmq.client.impl.recovery;
 
 import com.rabbitmq.client.*;
 import com.rabbitmq.client.RecoverableChannel;
+import com.rabbitmq.client.impl.PrefetchController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -31,6 +36,8 @@ import java.util.concurrent.TimeoutException;
  * @since 3.3.0
  */
 public class AutorecoveringChannel implements RecoverableChannel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AutorecoveringChannel.class);
+
     private volatile RecoveryAwareChannelN delegate;
     private volatile AutorecoveringConnection connection;
     private final List<ShutdownListener> shutdownHooks  = new CopyOnWriteArrayList<ShutdownListener>();
@@ -40,6 +47,13 @@ public class AutorecoveringChannel implements RecoverableChannel {
     private final Set<String> consumerTags = Collections.synchronizedSet(new HashSet<String>());
     private int prefetchCountConsumer;
     private int prefetchCountGlobal;
+    private int consumerDispatchWeight = 1;
+    private int adaptivePrefetchMin = 0;
+    private int adaptivePrefetchMax = 0;
+    private int ackCoalescingBatchSize = 0;
+    private long ackCoalescingDelay;
+    private TimeUnit ackCoalescingDelayUnit;
+    private ScheduledExecutorService ackCoalescingScheduler;
     private boolean usesPublisherConfirms;
     private boolean usesTransactions;
 
@@ -166,6 +180,55 @@ public class AutorecoveringChannel implements RecoverableChannel {
         delegate.setDefaultConsumer(consumer);
     }
 
+    @Override
+    public void setConsumerDispatchWeight(int weight) {
+        delegate.setConsumerDispatchWeight(weight);
+        this.consumerDispatchWeight = weight;
+    }
+
+    /**
+     * Enables adaptive prefetch on the current channel, and on the channels
+     * that replace it when the connection recovers.
+     * @param minPrefetch lowest prefetch count to use
+     * @param maxPrefetch highest prefetch count to use
+     * @return the controller of the current channel
+     * @throws IOException if setting the initial prefetch count fails
+     * @see com.rabbitmq.client.impl.ChannelN#enableAdaptivePrefetch(int, int)
+     * @since 5.3.0
+     */
+    public PrefetchController enableAdaptivePrefetch(int minPrefetch, int maxPrefetch) throws IOException {
+        PrefetchController controller = delegate.enableAdaptivePrefetch(minPrefetch, maxPrefetch);
+        this.adaptivePrefetchMin = minPrefetch;
+        this.adaptivePrefetchMax = maxPrefetch;
+        return controller;
+    }
+
+    /**
+     * @return the adaptive prefetch controller of the current channel, null if not enabled
+     */
+    public PrefetchController getPrefetchController() {
+        return delegate.getPrefetchController();
+    }
+
+    /**
+     * Enables acknowledgement coalescing on the current channel, and on the channels
+     * that replace it when the connection recovers.
+     * @param maxBatchSize number of pending acknowledgements that triggers sending
+     * @param maxDelay time after which pending acknowledgements are sent
+     * @param unit unit of <code>maxDelay</code>
+     * @param scheduler executor to send acknowledgements after <code>maxDelay</code>,
+     *                  a shared daemon thread is used if null
+     * @see com.rabbitmq.client.impl.ChannelN#enableAckCoalescing(int, long, TimeUnit, ScheduledExecutorService)
+     * @since 5.3.0
+     */
+    public void enableAckCoalescing(int maxBatchSize, long maxDelay, TimeUnit unit, ScheduledExecutorService scheduler) {
+        delegate.enableAckCoalescing(maxBatchSize, maxDelay, unit, scheduler);
+        this.ackCoalescingBatchSize = maxBatchSize;
+        this.ackCoalescingDelay = maxDelay;
+        this.ackCoalescingDelayUnit = unit;
+        this.ackCoalescingScheduler = scheduler;
+    }
+
     @Override
     public void basicQos(int prefetchSize, int prefetchCount, boolean global) throws IOException {
         if (global) {
@@ -798,12 +861,22 @@ public class AutorecoveringChannel implements RecoverableChannel {
     }
 
     private void recoverState() throws IOException {
+        if (this.consumerDispatchWeight != 1) {
+            this.delegate.setConsumerDispatchWeight(this.consumerDispatchWeight);
+        }
         if (this.prefetchCountConsumer != 0) {
             basicQos(this.prefetchCountConsumer, false);
         }
         if (this.prefetchCountGlobal != 0) {
             basicQos(this.prefetchCountGlobal, true);
         }
+        if (this.ackCoalescingBatchSize != 0) {
+            this.delegate.enableAckCoalescing(this.ackCoalescingBatchSize, this.ackCoalescingDelay,
+                this.ackCoalescingDelayUnit, this.ackCoalescingScheduler);
+        }
+        if (this.adaptivePrefetchMax != 0) {
+            this.delegate.enableAdaptivePrefetch(this.adaptivePrefetchMin, this.adaptivePrefetchMax);
+        }
         if(this.usesPublisherConfirms) {
             this.confirmSelect();
         }
@@ -898,7 +971,52 @@ public class AutorecoveringChannel implements RecoverableChannel {
 
     @Override
     public CompletableFuture<Command> asyncCompletableRpc(Method method) throws IOException {
-        return this.delegate.asyncCompletableRpc(method);
+        // declarations sent this way (e.g. by TopologyBatch) are recorded
+        // once the broker has acknowledged them. A recording failure must not
+        // fail the declaration itself: the broker has already applied it.
+        return this.delegate.asyncCompletableRpc(method).whenComplete((reply, error) -> {
+            if (reply != null) {
+                try {
+                    recordDeclaration(method, reply);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Could not record {} for topology recovery", method.protocolMethodName(), e);
+                }
+            }
+        });
+    }
+
+    private void recordDeclaration(Method method, Command reply) {
+        if (method instanceof AMQP.Exchange.Declare) {
+            AMQP.Exchange.Declare declare = (AMQP.Exchange.Declare) method;
+            if (!declare.getPassive()) {
+                RecordedExchange x = new RecordedExchange(this, declare.getExchange()).
+                  type(declare.getType()).
+                  durable(declare.getDurable()).
+                  autoDelete(declare.getAutoDelete()).
+                  arguments(declare.getArguments());
+                recordExchange(declare.getExchange(), x);
+            }
+        } else if (method instanceof AMQP.Queue.Declare) {
+            AMQP.Queue.Declare declare = (AMQP.Queue.Declare) method;
+            if (!declare.getPassive()) {
+                AMQP.Queue.DeclareOk ok = (AMQP.Queue.DeclareOk) reply.getMethod();
+                RecordedQueue q = new RecordedQueue(this, ok.getQueue()).
+                    durable(declare.getDurable()).
+                    exclusive(declare.getExclusive()).
+                    autoDelete(declare.getAutoDelete()).
+                    arguments(declare.getArguments());
+                if (declare.getQueue().equals(RecordedQueue.EMPTY_STRING)) {
+                    q.serverNamed(true);
+                }
+                recordQueue(ok, q);
+            }
+        } else if (method instanceof AMQP.Queue.Bind) {
+            AMQP.Queue.Bind bind = (AMQP.Queue.Bind) method;
+            recordQueueBinding(bind.getQueue(), bind.getExchange(), bind.getRoutingKey(), bind.getArguments());
+        } else if (method instanceof AMQP.Exchange.Bind) {
+            AMQP.Exchange.Bind bind = (AMQP.Exchange.Bind) method;
+            recordExchangeBinding(bind.getDestination(), bind.getSource(), bind.getRoutingKey(), bind.getArguments());
+        }
     }
 
     @Override
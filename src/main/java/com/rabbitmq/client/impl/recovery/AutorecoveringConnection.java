@@ -28,11 +28,16 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 /**
  * Connection implementation that performs automatic recovery when
@@ -49,6 +54,9 @@ import java.util.concurrent.locks.ReentrantLock;
  *  <li>Consumers</li>
  * </ol>
  *
+ * Entities declared on different channels can be recovered concurrently,
+ * see {@link com.rabbitmq.client.ConnectionFactory#setTopologyRecoveryExecutor(ExecutorService)}.
+ *
  * @see com.rabbitmq.client.Connection
  * @see com.rabbitmq.client.Recoverable
  * @see com.rabbitmq.client.ConnectionFactory#setAutomaticRecoveryEnabled(boolean)
@@ -62,6 +70,8 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
     private final RecoveryAwareAMQConnectionFactory cf;
     private final Map<Integer, AutorecoveringChannel> channels;
     private final ConnectionParams params;
+    private final MetricsCollector metricsCollector;
+    private final StandbyConnection standby;
     private volatile RecoveryAwareAMQConnection delegate;
 
     private final List<ShutdownListener> shutdownHooks  = Collections.synchronizedList(new ArrayList<ShutdownListener>());
@@ -70,9 +80,9 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
 
     // Records topology changes
     private final Map<String, RecordedQueue> recordedQueues = Collections.synchronizedMap(new LinkedHashMap<String, RecordedQueue>());
-    private final List<RecordedBinding> recordedBindings = Collections.synchronizedList(new ArrayList<RecordedBinding>());
+    private final RecordedBindings recordedBindings = new RecordedBindings();
     private final Map<String, RecordedExchange> recordedExchanges = Collections.synchronizedMap(new LinkedHashMap<String, RecordedExchange>());
-    private final Map<String, RecordedConsumer> consumers = Collections.synchronizedMap(new LinkedHashMap<String, RecordedConsumer>());
+    private final RecordedConsumers consumers = new RecordedConsumers();
     private final List<ConsumerRecoveryListener> consumerRecoveryListeners = Collections.synchronizedList(new ArrayList<ConsumerRecoveryListener>());
     private final List<QueueRecoveryListener> queueRecoveryListeners = Collections.synchronizedList(new ArrayList<QueueRecoveryListener>());
 	
@@ -94,6 +104,9 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
     public AutorecoveringConnection(ConnectionParams params, FrameHandlerFactory f, AddressResolver addressResolver, MetricsCollector metricsCollector) {
         this.cf = new RecoveryAwareAMQConnectionFactory(params, f, addressResolver, metricsCollector);
         this.params = params;
+        this.metricsCollector = metricsCollector;
+        this.standby = params.isStandbyConnectionEnabled() ?
+            new StandbyConnection(this.cf, params.getThreadFactory()) : null;
 
         setupErrorOnWriteListenerForPotentialRecovery();
 
@@ -133,6 +146,9 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
     public void init() throws IOException, TimeoutException {
         this.delegate = this.cf.newConnection();
         this.addAutomaticRecoveryListener(delegate);
+        if (this.standby != null) {
+            this.standby.start(this.delegate);
+        }
     }
 
     /**
@@ -245,9 +261,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void close() throws IOException {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
         delegate.close();
     }
 
@@ -256,9 +270,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void close(int timeout) throws IOException {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
         delegate.close(timeout);
     }
 
@@ -267,9 +279,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void close(int closeCode, String closeMessage, int timeout) throws IOException {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
         delegate.close(closeCode, closeMessage, timeout);
     }
 
@@ -278,9 +288,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void abort() {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
         delegate.abort();
     }
 
@@ -289,9 +297,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void abort(int closeCode, String closeMessage, int timeout) {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
         delegate.abort(closeCode, closeMessage, timeout);
     }
 
@@ -300,9 +306,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void abort(int closeCode, String closeMessage) {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
         delegate.abort(closeCode, closeMessage);
     }
 
@@ -311,9 +315,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void abort(int timeout) {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
         delegate.abort(timeout);
     }
 
@@ -382,9 +384,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
      */
     @Override
     public void close(int closeCode, String closeMessage) throws IOException {
-		synchronized(recoveryLock) {
-			this.manuallyClosed = true;
-		}
+        this.markManuallyClosed();
 		delegate.close(closeCode, closeMessage);
     }
 
@@ -472,6 +472,15 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
         return this.delegate.getLocalPort();
     }
 
+    private void markManuallyClosed() {
+		synchronized(recoveryLock) {
+			this.manuallyClosed = true;
+		}
+        if (this.standby != null) {
+            this.standby.close();
+        }
+    }
+
     //
     // Recovery
     //
@@ -485,7 +494,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
             public void recoveryCanBegin(ShutdownSignalException cause) {
                 try {
                     if (shouldTriggerConnectionRecovery(cause)) {
-                        c.beginAutomaticRecovery();
+                        c.beginAutomaticRecovery(newConn);
                     }
                 } catch (Exception e) {
                     newConn.getExceptionHandler().handleConnectionRecoveryException(c, e);
@@ -539,25 +548,56 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
         this.consumerRecoveryListeners.remove(listener);
     }
 
-    synchronized private void beginAutomaticRecovery() throws InterruptedException {
-        Thread.sleep(this.params.getRecoveryDelayHandler().getDelay(0));
+    synchronized private void beginAutomaticRecovery(RecoveryAwareAMQConnection failedConn) throws InterruptedException {
+        if (failedConn != this.delegate && this.delegate.isOpen()) {
+            // e.g. a standby connection that failed while being put into service,
+            // the connection has been recovered with another one in the meantime
+            return;
+        }
+        final RecoveryAwareAMQConnection standbyConn = this.standby == null ? null : this.standby.take();
+        if (standbyConn == null) {
+            Thread.sleep(this.params.getRecoveryDelayHandler().getDelay(0));
+        }
 
         this.notifyRecoveryListenersStarted();
 
-        final RecoveryAwareAMQConnection newConn = this.recoverConnection();
+        long start = System.nanoTime();
+        RecoveryAwareAMQConnection newConn = standbyConn == null ?
+            this.recoverConnection() : this.useStandbyConnection(standbyConn);
         if (newConn == null) {
             return;
         }
 
         this.addAutomaticRecoveryListener(newConn);
+        if (newConn == standbyConn && !newConn.isOpen()) {
+            // the standby connection went down at the same time as the active one
+            // (e.g. both on the same node) and may have closed before the recovery
+            // listener was added, so that it would never fire: use a new connection
+            LOGGER.info("Standby connection closed while taking over, opening a new connection");
+            newConn.abort();
+            newConn = this.recoverConnection();
+            if (newConn == null) {
+                return;
+            }
+            this.addAutomaticRecoveryListener(newConn);
+        }
+        this.notifyRecoveryPhase(RecoveryPhase.CONNECTION, 0, System.nanoTime() - start);
 	    this.recoverShutdownListeners(newConn);
 	    this.recoverBlockedListeners(newConn);
+	    start = System.nanoTime();
+	    // the topology recovery deadline includes channel recovery, but not
+	    // the reconnection attempts, which can last as long as the outage
+	    final long deadline = this.params.getTopologyRecoveryDeadline() > 0 ?
+	        start + TimeUnit.MILLISECONDS.toNanos(this.params.getTopologyRecoveryDeadline()) : 0;
 	    this.recoverChannels(newConn);
+	    this.notifyRecoveryPhase(RecoveryPhase.CHANNELS, this.channels.size(), System.nanoTime() - start);
 	    // don't assign new delegate connection until channel recovery is complete
 	    this.delegate = newConn;
+	    if (this.standby != null) {
+	        this.standby.activated(newConn);
+	    }
 	    if(this.params.isTopologyRecoveryEnabled()) {
-		      this.recoverEntities();
-		      this.recoverConsumers();
+		      this.recoverTopology(deadline);
 	    }
 
 		this.notifyRecoveryListenersComplete();
@@ -575,11 +615,26 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
         }
     }
 
+    // Returns the standby connection, null if application initiated shutdown
+    // in the meantime.
+    private RecoveryAwareAMQConnection useStandbyConnection(RecoveryAwareAMQConnection standbyConn) {
+        synchronized(recoveryLock) {
+            if (!manuallyClosed) {
+                return standbyConn;
+            }
+        }
+        standbyConn.abort();
+        return null;
+    }
+
 	// Returns new connection if the connection was recovered, 
 	// null if application initiated shutdown while attempting recovery.  
     private RecoveryAwareAMQConnection recoverConnection() throws InterruptedException {
         int attempts = 0;
         while (!manuallyClosed) {
+            if (this.params.getRecoveryAttemptLimiter() != null) {
+                this.params.getRecoveryAttemptLimiter().acquire();
+            }
             try {
                 attempts++;
 				RecoveryAwareAMQConnection newConn = this.cf.newConnection();
@@ -625,129 +680,263 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
         }
     }
 
-    private void recoverEntities() {
+    private void notifyRecoveryPhase(RecoveryPhase phase, int entities, long duration) {
+        for (RecoveryListener f : Utility.copy(this.recoveryListeners)) {
+            f.handleRecoveryPhase(this, phase, entities, duration);
+        }
+        this.metricsCollector.recoveryPhase(this, phase, entities, duration);
+    }
+
+    private void recoverTopology(long deadline) throws InterruptedException {
         // The recovery sequence is the following:
         //
         // 1. Recover exchanges
         // 2. Recover queues
         // 3. Recover bindings
         // 4. Recover consumers
-        recoverExchanges();
-        recoverQueues();
-        recoverBindings();
-    }
+        //
+        // Each step completes before the next one starts, so bindings
+        // and consumers see the new names of server-named queues.
+        //
+        // Critical queues go through steps 2 to 4 before the other queues,
+        // and only the other queues are subject to the recovery deadline.
+        // Each step is reported once, critical and other entities together.
+        final Map<RecoveryPhase, long[]> phases = new EnumMap<RecoveryPhase, long[]>(RecoveryPhase.class);
+        final Predicate<String> critical = this.params.getTopologyRecoveryPriority();
 
-    private void recoverExchanges() {
         // recorded exchanges are guaranteed to be
         // non-predefined (we filter out predefined ones
         // in exchangeDeclare). MK.
-        for (RecordedExchange x : Utility.copy(this.recordedExchanges).values()) {
-            try {
-                x.recover();
-            } catch (Exception cause) {
-                final String message = "Caught an exception while recovering exchange " + x.getName() +
-                        ": " + cause.getMessage();
-                TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
-                this.getExceptionHandler().handleTopologyRecoveryException(delegate, x.getDelegateChannel(), e);
+        recover(RecoveryPhase.EXCHANGES, Utility.copy(this.recordedExchanges).values(), x -> x, this::recoverExchange, 0, phases);
+
+        final Set<String> criticalQueues = new HashSet<String>();
+        if (critical != null) {
+            List<Map.Entry<String, RecordedQueue>> queues = filter(
+                Utility.copy(this.recordedQueues).entrySet(), entry -> critical.test(entry.getKey()));
+            recover(RecoveryPhase.QUEUES, queues, Map.Entry::getValue, this::recoverQueue, 0, phases);
+            for (Map.Entry<String, RecordedQueue> entry : queues) {
+                criticalQueues.add(entry.getValue().getName());
             }
+            recover(RecoveryPhase.BINDINGS, filter(this.recordedBindings.snapshot(),
+                b -> criticalQueues.contains(b.getDestination())), b -> b, this::recoverBinding, 0, phases);
+            recover(RecoveryPhase.CONSUMERS, filter(this.consumers.snapshot().entrySet(),
+                entry -> criticalQueues.contains(entry.getValue().getQueue())), Map.Entry::getValue, this::recoverConsumer, 0, phases);
+        }
+
+        recover(RecoveryPhase.QUEUES, filter(Utility.copy(this.recordedQueues).entrySet(),
+            entry -> !criticalQueues.contains(entry.getKey())), Map.Entry::getValue, this::recoverQueue, deadline, phases);
+        recover(RecoveryPhase.BINDINGS, filter(this.recordedBindings.snapshot(),
+            b -> !criticalQueues.contains(b.getDestination())), b -> b, this::recoverBinding, deadline, phases);
+        recover(RecoveryPhase.CONSUMERS, filter(this.consumers.snapshot().entrySet(),
+            entry -> !criticalQueues.contains(entry.getValue().getQueue())), Map.Entry::getValue, this::recoverConsumer, deadline, phases);
+
+        for (Map.Entry<RecoveryPhase, long[]> phase : phases.entrySet()) {
+            notifyRecoveryPhase(phase.getKey(), (int) phase.getValue()[0], phase.getValue()[1]);
         }
     }
 
-    private void recoverQueues() {
-        for (Map.Entry<String, RecordedQueue> entry : Utility.copy(this.recordedQueues).entrySet()) {
-            String oldName = entry.getKey();
-            RecordedQueue q = entry.getValue();
-            try {
-                q.recover();
-                String newName = q.getName();
-                if (!oldName.equals(newName)) {
-                    // make sure server-named queues are re-added with
-                    // their new names. MK.
-                    synchronized (this.recordedQueues) {
-                        this.propagateQueueNameChangeToBindings(oldName, newName);
-                        this.propagateQueueNameChangeToConsumers(oldName, newName);
-                        // bug26552:
-                        // remove old name after we've updated the bindings and consumers,
-                        // plus only for server-named queues, both to make sure we don't lose
-                        // anything to recover. MK.
-                        if(q.isServerNamed()) {
-                            deleteRecordedQueue(oldName);
-                        }
-                        this.recordedQueues.put(newName, q);
+    private void recoverExchange(RecordedExchange x) {
+        try {
+            x.recover();
+        } catch (Exception cause) {
+            final String message = "Caught an exception while recovering exchange " + x.getName() +
+                    ": " + cause.getMessage();
+            TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
+            this.getExceptionHandler().handleTopologyRecoveryException(delegate, x.getDelegateChannel(), e);
+        }
+    }
+
+    private void recoverQueue(Map.Entry<String, RecordedQueue> entry) {
+        String oldName = entry.getKey();
+        RecordedQueue q = entry.getValue();
+        try {
+            q.recover();
+            String newName = q.getName();
+            if (!oldName.equals(newName)) {
+                // make sure server-named queues are re-added with
+                // their new names. MK.
+                synchronized (this.recordedQueues) {
+                    this.propagateQueueNameChangeToBindings(oldName, newName);
+                    this.propagateQueueNameChangeToConsumers(oldName, newName);
+                    // bug26552:
+                    // remove old name after we've updated the bindings and consumers,
+                    // plus only for server-named queues, both to make sure we don't lose
+                    // anything to recover. MK.
+                    if(q.isServerNamed()) {
+                        deleteRecordedQueue(oldName);
                     }
+                    this.recordedQueues.put(newName, q);
                 }
-                for(QueueRecoveryListener qrl : Utility.copy(this.queueRecoveryListeners)) {
-                    qrl.queueRecovered(oldName, newName);
-                }
-            } catch (Exception cause) {
-                final String message = "Caught an exception while recovering queue " + oldName +
-                                               ": " + cause.getMessage();
-                TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
-                this.getExceptionHandler().handleTopologyRecoveryException(delegate, q.getDelegateChannel(), e);
             }
+            for(QueueRecoveryListener qrl : Utility.copy(this.queueRecoveryListeners)) {
+                qrl.queueRecovered(oldName, newName);
+            }
+        } catch (Exception cause) {
+            final String message = "Caught an exception while recovering queue " + oldName +
+                                           ": " + cause.getMessage();
+            TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
+            this.getExceptionHandler().handleTopologyRecoveryException(delegate, q.getDelegateChannel(), e);
         }
     }
 
-    private void recoverBindings() {
-        for (RecordedBinding b : Utility.copy(this.recordedBindings)) {
-            try {
-                b.recover();
-            } catch (Exception cause) {
-                String message = "Caught an exception while recovering binding between " + b.getSource() +
-                                         " and " + b.getDestination() + ": " + cause.getMessage();
-                TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
-                this.getExceptionHandler().handleTopologyRecoveryException(delegate, b.getDelegateChannel(), e);
-            }
+    private void recoverBinding(RecordedBinding b) {
+        try {
+            b.recover();
+        } catch (Exception cause) {
+            String message = "Caught an exception while recovering binding between " + b.getSource() +
+                                     " and " + b.getDestination() + ": " + cause.getMessage();
+            TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
+            this.getExceptionHandler().handleTopologyRecoveryException(delegate, b.getDelegateChannel(), e);
         }
     }
 
-    private void recoverConsumers() {
-        for (Map.Entry<String, RecordedConsumer> entry : Utility.copy(this.consumers).entrySet()) {
-            String tag = entry.getKey();
-            RecordedConsumer consumer = entry.getValue();
+    private void recoverConsumer(Map.Entry<String, RecordedConsumer> entry) {
+        String tag = entry.getKey();
+        RecordedConsumer consumer = entry.getValue();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Recovering consumer {}", consumer);
+        }
+        try {
+            String newTag = consumer.recover();
+            // make sure server-generated tags are re-added. MK.
+            if(tag != null && !tag.equals(newTag)) {
+                this.consumers.retag(tag, newTag);
+                consumer.getChannel().updateConsumerTag(tag, newTag);
+            }
+
+            for(ConsumerRecoveryListener crl : Utility.copy(this.consumerRecoveryListeners)) {
+                crl.consumerRecovered(tag, newTag);
+            }
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Recovering consumer {}", consumer);
+                LOGGER.debug("Consumer {} has recovered", consumer);
             }
-            try {
-                String newTag = consumer.recover();
-                // make sure server-generated tags are re-added. MK.
-                if(tag != null && !tag.equals(newTag)) {
-                    synchronized (this.consumers) {
-                        this.consumers.remove(tag);
-                        this.consumers.put(newTag, consumer);
-                    }
-                    consumer.getChannel().updateConsumerTag(tag, newTag);
-                }
+        } catch (Exception cause) {
+            final String message = "Caught an exception while recovering consumer " + tag +
+                    ": " + cause.getMessage();
+            TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
+            this.getExceptionHandler().handleTopologyRecoveryException(delegate, consumer.getDelegateChannel(), e);
+        }
+    }
 
-                for(ConsumerRecoveryListener crl : Utility.copy(this.consumerRecoveryListeners)) {
-                    crl.consumerRecovered(tag, newTag);
-                }
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Consumer {} has recovered", consumer);
-                }
-            } catch (Exception cause) {
-                final String message = "Caught an exception while recovering consumer " + tag +
-                        ": " + cause.getMessage();
-                TopologyRecoveryException e = new TopologyRecoveryException(message, cause);
-                this.getExceptionHandler().handleTopologyRecoveryException(delegate, consumer.getDelegateChannel(), e);
+    /**
+     * Recover entities of a given kind and add the number of recovered entities
+     * and the time it took to the phase in {@code phases}.
+     * Entities are skipped once the deadline (if not 0) is exceeded:
+     * they are reported to the exception handler and stay recorded,
+     * so they are recovered again only if the connection fails again.
+     */
+    private <T> void recover(RecoveryPhase phase, Collection<T> items,
+                             java.util.function.Function<T, RecordedEntity> entity,
+                             java.util.function.Consumer<T> recovery, long deadline,
+                             Map<RecoveryPhase, long[]> phases) throws InterruptedException {
+        long start = System.nanoTime();
+        final AtomicInteger skipped = new AtomicInteger(0);
+        recoverPerChannel(items, entity, deadline == 0 ? recovery : item -> {
+            if (System.nanoTime() - deadline > 0) {
+                skipped.incrementAndGet();
+                RecordedEntity skippedEntity = entity.apply(item);
+                TopologyRecoveryException e = new TopologyRecoveryException(
+                    "Topology recovery deadline exceeded, " + describe(skippedEntity) + " not recovered", null);
+                this.getExceptionHandler().handleTopologyRecoveryException(delegate, skippedEntity.getDelegateChannel(), e);
+            } else {
+                recovery.accept(item);
             }
+        });
+        if (skipped.get() > 0) {
+            LOGGER.warn("Topology recovery deadline exceeded, {} entities not recovered ({})", skipped.get(), phase);
+        }
+        long[] counters = phases.get(phase);
+        if (counters == null) {
+            counters = new long[2];
+            phases.put(phase, counters);
+        }
+        counters[0] += items.size() - skipped.get();
+        counters[1] += System.nanoTime() - start;
+    }
+
+    private static String describe(RecordedEntity entity) {
+        if (entity instanceof RecordedConsumer) {
+            return "consumer " + ((RecordedConsumer) entity).getConsumerTag();
+        } else if (entity instanceof RecordedBinding) {
+            RecordedBinding binding = (RecordedBinding) entity;
+            return "binding between " + binding.getSource() + " and " + binding.getDestination();
+        } else if (entity instanceof RecordedQueue) {
+            return "queue " + ((RecordedQueue) entity).getName();
+        } else if (entity instanceof RecordedNamedEntity) {
+            return "exchange " + ((RecordedNamedEntity) entity).getName();
         }
+        return String.valueOf(entity);
     }
 
-    private void propagateQueueNameChangeToBindings(String oldName, String newName) {
-        for (RecordedBinding b : Utility.copy(this.recordedBindings)) {
-            if (b.getDestination().equals(oldName)) {
-                b.setDestination(newName);
+    private static <T> List<T> filter(Collection<T> items, Predicate<T> predicate) {
+        List<T> result = new ArrayList<T>(items.size());
+        for (T item : items) {
+            if (predicate.test(item)) {
+                result.add(item);
             }
         }
+        return result;
     }
 
-    private void propagateQueueNameChangeToConsumers(String oldName, String newName) {
-        for (RecordedConsumer c : Utility.copy(this.consumers).values()) {
-            if (c.getQueue().equals(oldName)) {
-                c.setQueue(newName);
+    /**
+     * Recover entities in the order of the collection, without a topology
+     * recovery executor. With an executor, entities are grouped by channel:
+     * the entities of a channel are recovered in order, one at a time,
+     * and the channels are recovered concurrently.
+     * Returns once all the entities have been recovered.
+     */
+    private <T> void recoverPerChannel(Collection<T> items,
+                                       java.util.function.Function<T, RecordedEntity> entity,
+                                       java.util.function.Consumer<T> recovery) throws InterruptedException {
+        ExecutorService executor = this.params.getTopologyRecoveryExecutor();
+        if (executor == null || items.size() <= 1) {
+            for (T item : items) {
+                recovery.accept(item);
             }
+            return;
         }
+        // channels do not override equals, hence grouping by instance
+        Map<AutorecoveringChannel, List<T>> byChannel = new LinkedHashMap<AutorecoveringChannel, List<T>>();
+        for (T item : items) {
+            AutorecoveringChannel channel = entity.apply(item).getChannel();
+            List<T> channelItems = byChannel.get(channel);
+            if (channelItems == null) {
+                channelItems = new ArrayList<T>();
+                byChannel.put(channel, channelItems);
+            }
+            channelItems.add(item);
+        }
+        List<Future<?>> tasks = new ArrayList<Future<?>>(byChannel.size());
+        for (final List<T> channelItems : byChannel.values()) {
+            tasks.add(executor.submit(() -> {
+                for (T item : channelItems) {
+                    recovery.accept(item);
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                // e.g. thrown by the exception handler, same as on the recovery thread
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ?
+                        (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void propagateQueueNameChangeToBindings(String oldName, String newName) {
+        this.recordedBindings.renameDestination(oldName, newName);
+    }
+
+    private void propagateQueueNameChangeToConsumers(String oldName, String newName) {
+        this.consumers.renameQueue(oldName, newName);
     }
 
     void recordQueueBinding(AutorecoveringChannel ch,
@@ -760,8 +949,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
                                          destination(queue).
                                          routingKey(routingKey).
                                          arguments(arguments);
-        this.recordedBindings.remove(binding);
-        this.recordedBindings.add(binding);
+        this.recordedBindings.record(binding);
     }
 
     boolean deleteRecordedQueueBinding(AutorecoveringChannel ch,
@@ -787,8 +975,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
                                           destination(destination).
                                           routingKey(routingKey).
                                           arguments(arguments);
-        this.recordedBindings.remove(binding);
-        this.recordedBindings.add(binding);
+        this.recordedBindings.record(binding);
     }
 
     boolean deleteRecordedExchangeBinding(AutorecoveringChannel ch,
@@ -832,7 +1019,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
             // Note: This is basically the same as maybeDeleteRecordedAutoDeleteQueue except it works for non auto-delete queues as well.
             synchronized (this.consumers) {
                 synchronized (this.recordedQueues) {
-                    if (!hasMoreConsumersOnQueue(this.consumers.values(), queue)) {
+                    if (!this.consumers.hasConsumersOn(queue)) {
                         deleteRecordedQueue(queue);
                     }
                 }
@@ -855,7 +1042,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
     }
 
     void recordConsumer(String result, RecordedConsumer consumer) {
-        this.consumers.put(result, consumer);
+        this.consumers.record(result, consumer);
     }
 
     RecordedConsumer deleteRecordedConsumer(String consumerTag) {
@@ -865,7 +1052,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
     void maybeDeleteRecordedAutoDeleteQueue(String queue) {
         synchronized (this.consumers) {
             synchronized (this.recordedQueues) {
-                if(!hasMoreConsumersOnQueue(this.consumers.values(), queue)) {
+                if(!this.consumers.hasConsumersOn(queue)) {
                     RecordedQueue q = this.recordedQueues.get(queue);
                     // last consumer on this connection is gone, remove recorded queue
                     // if it is auto-deleted. See bug 26364.
@@ -880,7 +1067,7 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
     void maybeDeleteRecordedAutoDeleteExchange(String exchange) {
         synchronized (this.consumers) {
             synchronized (this.recordedExchanges) {
-                if(!hasMoreDestinationsBoundToExchange(Utility.copy(this.recordedBindings), exchange)) {
+                if(!this.recordedBindings.hasSource(exchange)) {
                     RecordedExchange x = this.recordedExchanges.get(exchange);
                     // last binding where this exchange is the source is gone, remove recorded exchange
                     // if it is auto-deleted. See bug 26364.
@@ -892,40 +1079,8 @@ public class AutorecoveringConnection implements RecoverableConnection, NetworkC
         }
     }
 
-    boolean hasMoreDestinationsBoundToExchange(List<RecordedBinding> bindings, String exchange) {
-        boolean result = false;
-        for (RecordedBinding b : bindings) {
-            if(exchange.equals(b.getSource())) {
-                result = true;
-                break;
-            }
-        }
-        return result;
-    }
-
-    boolean hasMoreConsumersOnQueue(Collection<RecordedConsumer> consumers, String queue) {
-        boolean result = false;
-        for (RecordedConsumer c : consumers) {
-            if(queue.equals(c.getQueue())) {
-                result = true;
-                break;
-            }
-        }
-        return result;
-    }
-
     Set<RecordedBinding> removeBindingsWithDestination(String s) {
-        final Set<RecordedBinding> result = new HashSet<RecordedBinding>();
-        synchronized (this.recordedBindings) {
-            for (Iterator<RecordedBinding> it = this.recordedBindings.iterator(); it.hasNext(); ) {
-                RecordedBinding b = it.next();
-                if(b.getDestination().equals(s)) {
-                    it.remove();
-                    result.add(b);
-                }
-            }
-        }
-        return result;
+        return this.recordedBindings.removeWithDestination(s);
     }
 
     public Map<String, RecordedQueue> getRecordedQueues() {
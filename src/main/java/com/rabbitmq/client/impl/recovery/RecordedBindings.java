@@ -0,0 +1,118 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl.recovery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recorded bindings of a connection, indexed by source and destination.
+ * <p>
+ * Recording, deleting and renaming bindings cost O(1), or O(k) for
+ * k bindings of a given source or destination, instead of a scan
+ * over all the bindings of the connection.
+ * <p>
+ * Methods are synchronized on the instance.
+ *
+ * @since 5.3.0
+ */
+final class RecordedBindings {
+
+    private final Set<RecordedBinding> bindings = new LinkedHashSet<RecordedBinding>();
+    private final Map<String, Set<RecordedBinding>> bySource = new HashMap<String, Set<RecordedBinding>>();
+    private final Map<String, Set<RecordedBinding>> byDestination = new HashMap<String, Set<RecordedBinding>>();
+
+    /**
+     * Record a binding, replacing the equivalent binding if already recorded.
+     */
+    synchronized void record(RecordedBinding binding) {
+        remove(binding);
+        this.bindings.add(binding);
+        index(this.bySource, binding.getSource(), binding);
+        index(this.byDestination, binding.getDestination(), binding);
+    }
+
+    synchronized boolean remove(RecordedBinding binding) {
+        if (this.bindings.remove(binding)) {
+            unindex(this.bySource, binding.getSource(), binding);
+            unindex(this.byDestination, binding.getDestination(), binding);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    synchronized Set<RecordedBinding> removeWithDestination(String destination) {
+        Set<RecordedBinding> removed = this.byDestination.remove(destination);
+        if (removed == null) {
+            return Collections.emptySet();
+        }
+        for (RecordedBinding binding : removed) {
+            this.bindings.remove(binding);
+            unindex(this.bySource, binding.getSource(), binding);
+        }
+        return removed;
+    }
+
+    synchronized boolean hasSource(String source) {
+        return this.bySource.containsKey(source);
+    }
+
+    /**
+     * Point the bindings of a destination to its new name,
+     * e.g. when a server-named queue is recovered.
+     */
+    synchronized void renameDestination(String oldName, String newName) {
+        // the destination is part of the hash code of the bindings,
+        // so they are removed before being updated and recorded again
+        for (RecordedBinding binding : removeWithDestination(oldName)) {
+            binding.setDestination(newName);
+            record(binding);
+        }
+    }
+
+    synchronized List<RecordedBinding> snapshot() {
+        return new ArrayList<RecordedBinding>(this.bindings);
+    }
+
+    synchronized int size() {
+        return this.bindings.size();
+    }
+
+    private static void index(Map<String, Set<RecordedBinding>> index, String key, RecordedBinding binding) {
+        Set<RecordedBinding> bindings = index.get(key);
+        if (bindings == null) {
+            bindings = new LinkedHashSet<RecordedBinding>();
+            index.put(key, bindings);
+        }
+        bindings.add(binding);
+    }
+
+    private static void unindex(Map<String, Set<RecordedBinding>> index, String key, RecordedBinding binding) {
+        Set<RecordedBinding> bindings = index.get(key);
+        if (bindings != null) {
+            bindings.remove(binding);
+            if (bindings.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl.recovery;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recorded consumers of a connection, by consumer tag and indexed by queue.
+ * <p>
+ * Methods are synchronized on the instance.
+ *
+ * @since 5.3.0
+ */
+final class RecordedConsumers {
+
+    private final Map<String, RecordedConsumer> byTag = new LinkedHashMap<String, RecordedConsumer>();
+    private final Map<String, Set<RecordedConsumer>> byQueue = new HashMap<String, Set<RecordedConsumer>>();
+
+    synchronized void record(String consumerTag, RecordedConsumer consumer) {
+        remove(consumerTag);
+        this.byTag.put(consumerTag, consumer);
+        Set<RecordedConsumer> consumers = this.byQueue.get(consumer.getQueue());
+        if (consumers == null) {
+            consumers = new LinkedHashSet<RecordedConsumer>();
+            this.byQueue.put(consumer.getQueue(), consumers);
+        }
+        consumers.add(consumer);
+    }
+
+    synchronized RecordedConsumer remove(String consumerTag) {
+        RecordedConsumer consumer = this.byTag.remove(consumerTag);
+        if (consumer != null) {
+            Set<RecordedConsumer> consumers = this.byQueue.get(consumer.getQueue());
+            if (consumers != null) {
+                consumers.remove(consumer);
+                if (consumers.isEmpty()) {
+                    this.byQueue.remove(consumer.getQueue());
+                }
+            }
+        }
+        return consumer;
+    }
+
+    /**
+     * Record a consumer under its new tag, e.g. when a server-generated tag changes on recovery.
+     */
+    synchronized void retag(String oldTag, String newTag) {
+        RecordedConsumer consumer = remove(oldTag);
+        if (consumer != null) {
+            record(newTag, consumer);
+        }
+    }
+
+    /**
+     * Point the consumers of a queue to its new name,
+     * e.g. when a server-named queue is recovered.
+     */
+    synchronized void renameQueue(String oldName, String newName) {
+        Set<RecordedConsumer> consumers = this.byQueue.remove(oldName);
+        if (consumers != null) {
+            for (RecordedConsumer consumer : consumers) {
+                consumer.setQueue(newName);
+            }
+            Set<RecordedConsumer> existing = this.byQueue.get(newName);
+            if (existing == null) {
+                this.byQueue.put(newName, consumers);
+            } else {
+                existing.addAll(consumers);
+            }
+        }
+    }
+
+    synchronized boolean hasConsumersOn(String queue) {
+        return this.byQueue.containsKey(queue);
+    }
+
+    synchronized Map<String, RecordedConsumer> snapshot() {
+        return new LinkedHashMap<String, RecordedConsumer>(this.byTag);
+    }
+
+    synchronized int size() {
+        return this.byTag.size();
+    }
+}
@@ -21,8 +21,10 @@ import com.rabbitmq.client.impl.FrameHandler;
 import com.rabbitmq.client.impl.FrameHandlerFactory;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
@@ -54,8 +56,28 @@ public class RecoveryAwareAMQConnectionFactory {
      */
     // package protected API, made public for testing only
     public RecoveryAwareAMQConnection newConnection() throws IOException, TimeoutException {
+        return newConnection(null);
+    }
+
+    /**
+     * @param avoid connection whose address is tried last, can be null
+     * @return an interface to the connection
+     * @throws java.io.IOException if it encounters a problem
+     */
+    RecoveryAwareAMQConnection newConnection(Connection avoid) throws IOException, TimeoutException {
         Exception lastException = null;
         List<Address> shuffled = shuffle(addressResolver.getAddresses());
+        if (avoid != null) {
+            List<Address> last = new ArrayList<Address>();
+            for (Iterator<Address> it = shuffled.iterator(); it.hasNext(); ) {
+                Address addr = it.next();
+                if (isConnectedTo(avoid, addr)) {
+                    it.remove();
+                    last.add(addr);
+                }
+            }
+            shuffled.addAll(last);
+        }
 
         for (Address addr : shuffled) {
             try {
@@ -81,6 +103,14 @@ public class RecoveryAwareAMQConnectionFactory {
         throw new IOException("failed to connect");
     }
 
+    private static boolean isConnectedTo(Connection connection, Address addr) {
+        InetAddress inetAddress = connection.getAddress();
+        if (inetAddress == null || (addr.getPort() != -1 && addr.getPort() != connection.getPort())) {
+            return false;
+        }
+        return addr.getHost().equals(inetAddress.getHostAddress()) || addr.getHost().equals(inetAddress.getHostName());
+    }
+
     private static List<Address> shuffle(List<Address> addrs) {
         List<Address> list = new ArrayList<Address>(addrs);
         Collections.shuffle(list);
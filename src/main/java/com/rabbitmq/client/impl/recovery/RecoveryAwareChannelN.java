@@ -22,7 +22,6 @@ import com.rabbitmq.client.impl.AMQConnection;
 import com.rabbitmq.client.impl.AMQImpl;
 import com.rabbitmq.client.impl.ChannelN;
 import com.rabbitmq.client.impl.ConsumerWorkService;
-import com.rabbitmq.client.impl.AMQImpl.Basic;
 
 import java.io.IOException;
 
@@ -86,8 +85,9 @@ public class RecoveryAwareChannelN extends ChannelN {
         long realTag = deliveryTag - activeDeliveryTagOffset;
         // 0 tag means ack all when multiple is set
         if (realTag > 0 || (multiple && realTag == 0)) {
-            transmit(new Basic.Ack(realTag, multiple));
+            transmitAck(realTag, multiple);
             metricsCollector.basicAck(this, deliveryTag, multiple);
+            recordAcknowledgement(deliveryTag, multiple);
         }
     }
 
@@ -96,8 +96,9 @@ public class RecoveryAwareChannelN extends ChannelN {
         long realTag = deliveryTag - activeDeliveryTagOffset;
         // 0 tag means nack all when multiple is set
         if (realTag > 0 || (multiple && realTag == 0)) {
-            transmit(new Basic.Nack(realTag, multiple, requeue));
+            transmitNack(realTag, multiple, requeue);
             metricsCollector.basicNack(this, deliveryTag);
+            recordAcknowledgement(deliveryTag, multiple);
         }
     }
 
@@ -105,8 +106,9 @@ public class RecoveryAwareChannelN extends ChannelN {
     public void basicReject(long deliveryTag, boolean requeue) throws IOException {
         long realTag = deliveryTag - activeDeliveryTagOffset;
         if (realTag > 0) {
-            transmit(new Basic.Reject(realTag, requeue));
+            transmitReject(realTag, requeue);
             metricsCollector.basicReject(this, deliveryTag);
+            recordAcknowledgement(deliveryTag, false);
         }
     }
 
@@ -0,0 +1,136 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl.recovery;
+
+import com.rabbitmq.client.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection kept open in the background to replace the connection
+ * of an {@link AutorecoveringConnection} when it fails.
+ * <p>
+ * The standby connection is opened preferably to another node than
+ * the active connection. It is checked periodically (besides heartbeats)
+ * and re-opened if it is closed, e.g. because its node went down.
+ *
+ * @since 5.3.0
+ */
+final class StandbyConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StandbyConnection.class);
+
+    static final long CHECK_INTERVAL_IN_MS = 5000;
+
+    private final RecoveryAwareAMQConnectionFactory factory;
+    private final ScheduledExecutorService scheduler;
+
+    /** Connection to avoid the node of, i.e. the active connection */
+    private volatile Connection active;
+    /** Between {@link #take()} and {@link #activated(Connection)}, the connection to avoid is not known */
+    private volatile boolean recovering = false;
+    private RecoveryAwareAMQConnection standby;
+    private boolean closed = false;
+
+    StandbyConnection(RecoveryAwareAMQConnectionFactory factory, ThreadFactory threadFactory) {
+        this.factory = factory;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    void start(Connection active) {
+        this.active = active;
+        this.scheduler.scheduleWithFixedDelay(this::check, 0, CHECK_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hand the standby connection over, if it is open. The caller must call
+     * {@link #activated(Connection)} once it knows which connection is active,
+     * as the standby connection may turn out to be unusable.
+     * @return the open standby connection, null if none
+     */
+    RecoveryAwareAMQConnection take() {
+        RecoveryAwareAMQConnection connection;
+        synchronized (this) {
+            connection = this.standby;
+            this.standby = null;
+            this.recovering = true;
+        }
+        if (connection != null && !connection.isOpen()) {
+            connection = null;
+        }
+        return connection;
+    }
+
+    /**
+     * Record the new active connection after a recovery and open another
+     * standby connection, preferably to another node.
+     * @param connection the new active connection
+     */
+    void activated(Connection connection) {
+        this.active = connection;
+        this.recovering = false;
+        if (!this.scheduler.isShutdown()) {
+            this.scheduler.execute(this::check);
+        }
+    }
+
+    void close() {
+        RecoveryAwareAMQConnection connection;
+        synchronized (this) {
+            this.closed = true;
+            connection = this.standby;
+            this.standby = null;
+        }
+        this.scheduler.shutdownNow();
+        if (connection != null) {
+            connection.abort();
+        }
+    }
+
+    private void check() {
+        synchronized (this) {
+            if (this.closed || this.recovering || (this.standby != null && this.standby.isOpen())) {
+                return;
+            }
+        }
+        Connection avoid = this.active;
+        RecoveryAwareAMQConnection connection;
+        try {
+            connection = this.factory.newConnection(avoid);
+        } catch (Exception e) {
+            LOGGER.debug("Could not open standby connection, will retry in {} ms: {}", CHECK_INTERVAL_IN_MS, e.getMessage());
+            return;
+        }
+        RecoveryAwareAMQConnection previous;
+        synchronized (this) {
+            if (this.closed || this.recovering || this.active != avoid) {
+                // opened while the active connection was changing, it may be on the same node
+                previous = connection;
+            } else {
+                previous = this.standby;
+                this.standby = connection;
+            }
+        }
+        if (previous != null) {
+            previous.abort();
+        }
+    }
+}
@@ -15,12 +15,10 @@
 
 package com.rabbitmq.utility;
 
-import java.util.BitSet;
-
 /**
  * <p>
  *  A class for allocating integers from a given range that uses a
- * {@link BitSet} representation of the free integers.
+ * two-level bitmap representation of the free integers.
  * </p>
  *
  * <h2>Concurrecy Semantics:</h2>
@@ -28,32 +26,38 @@ import java.util.BitSet;
  *
  * <h2>Implementation notes:</h2>
  * <p>This was originally an ordered chain of non-overlapping Intervals,
- * together with a fixed size array cache for freed integers.
+ * together with a fixed size array cache for freed integers, then a
+ * {@link java.util.BitSet} of the free integers.
  * </p>
  * <p>
- * {@link #reserve(int)} was expensive in this scheme, whereas in the
- * present implementation it is O(1), as is {@link #free(int)}.
+ * {@link #reserve(int)} and {@link #free(int)} are O(1).
  * </p>
- * <p>Although {@link #allocate()} is slightly slower than O(1) and in the
- * worst case could be O(N), the use of a "<code>lastIndex</code>" field
- * for starting the next scan for free integers means this is negligible.
+ * <p>{@link #allocate()} starts scanning for free integers from the
+ * last allocated one (a "<code>lastIndex</code>" field), so that
+ * freed integers are not re-used right away. A summary bitmap, with
+ * one bit per 64-integer word telling whether the word has free integers,
+ * lets the scan skip fully allocated words 64 at a time: with the 65535
+ * channel numbers of a connection, the scan looks at no more than
+ * 17 summary words and 2 bitmap words, however fragmented the range is.
  * </p>
  * <p>The data representation overhead is O(N) where N is the size of the
- * allocation range. One <code>long</code> is used for every 64 integers in the
+ * allocation range. About one <code>long</code> is used for every 64 integers in the
  * range.
  * </p>
- * <p>Very little Object creation and destruction occurs in use.</p>
+ * <p>No Object creation and destruction occurs in use.</p>
  */
 public class IntAllocator {
 
     private final int loRange; // the integer bit 0 represents
     private final int hiRange; // one more than the integer the highest bit represents
-    private final int numberOfBits; // relevant in freeSet
+    private final int numberOfBits; // relevant in freeWords
     private int lastIndex = 0; // for searching for FREE integers
-    /** A bit is SET in freeSet if the corresponding integer is FREE
-     * <br/>A bit is UNSET in freeSet if the corresponding integer is ALLOCATED
+    /** A bit is SET in freeWords if the corresponding integer is FREE
+     * <br/>A bit is UNSET in freeWords if the corresponding integer is ALLOCATED
      */
-    private final BitSet freeSet;
+    private final long[] freeWords;
+    /** Bit <code>i</code> is SET if <code>freeWords[i]</code> has at least one FREE integer */
+    private final long[] summary;
 
     /**
      * Creates an IntAllocator allocating integer IDs within the
@@ -65,8 +69,11 @@ public class IntAllocator {
         this.loRange = bottom;
         this.hiRange = top + 1;
         this.numberOfBits = hiRange - loRange;
-        this.freeSet = new BitSet(this.numberOfBits);
-        this.freeSet.set(0, this.numberOfBits); // All integers FREE initially
+        this.freeWords = new long[(this.numberOfBits + 63) >>> 6];
+        this.summary = new long[(this.freeWords.length + 63) >>> 6];
+        for (int i = 0; i < this.numberOfBits; i++) { // All integers FREE initially
+            set(i);
+        }
     }
 
     /**
@@ -75,13 +82,13 @@ public class IntAllocator {
      * @return the allocated integer, or -1
      */
     public int allocate() {
-        int setIndex = this.freeSet.nextSetBit(this.lastIndex);
+        int setIndex = nextFree(this.lastIndex);
         if (setIndex<0) { // means none found in trailing part
-            setIndex = this.freeSet.nextSetBit(0);
+            setIndex = nextFree(0);
         }
         if (setIndex<0) return -1;
         this.lastIndex = setIndex;
-        this.freeSet.clear(setIndex);
+        clear(setIndex);
         return setIndex + this.loRange;
     }
 
@@ -90,10 +97,14 @@ public class IntAllocator {
      * runs in O(1) time.
      * No error checking is performed, so if you double free or free an
      * integer that was not originally allocated the results are undefined.
+     * Integers outside the range are ignored.
      * @param reservation the previously allocated integer to free
      */
     public void free(int reservation) {
-        this.freeSet.set(reservation - this.loRange);
+        int index = reservation - this.loRange;
+        if (inRange(index)) {
+            set(index);
+        }
     }
 
     /**
@@ -102,38 +113,82 @@ public class IntAllocator {
      * This operation runs in O(1) time.
      * @param reservation the integer to be allocated, if possible
      * @return <code><b>true</b></code> if allocated, <code><b>false</b></code>
-     * if already allocated
+     * if already allocated or outside the range
      */
     public boolean reserve(int reservation) {
         int index = reservation - this.loRange;
-        if (this.freeSet.get(index)) { // FREE
-            this.freeSet.clear(index);
+        if (inRange(index) && isFree(index)) { // FREE
+            clear(index);
             return true;
         } else {
             return false;
         }
     }
 
+    private boolean inRange(int index) {
+        return index >= 0 && index < this.numberOfBits;
+    }
+
+    private boolean isFree(int index) {
+        return (this.freeWords[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void set(int index) {
+        int word = index >>> 6;
+        this.freeWords[word] |= 1L << index;
+        this.summary[word >>> 6] |= 1L << word;
+    }
+
+    private void clear(int index) {
+        int word = index >>> 6;
+        this.freeWords[word] &= ~(1L << index);
+        if (this.freeWords[word] == 0) {
+            this.summary[word >>> 6] &= ~(1L << word);
+        }
+    }
+
+    /**
+     * @return the index of the first FREE integer at or after <code>from</code>, -1 if none
+     */
+    private int nextFree(int from) {
+        if (from >= this.numberOfBits) return -1;
+        int word = from >>> 6;
+        long bits = this.freeWords[word] & (-1L << from);
+        if (bits != 0) {
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        // look for the next word with free integers in the summary
+        int next = word + 1;
+        if (next >= this.freeWords.length) return -1;
+        int summaryIndex = next >>> 6;
+        long summaryBits = this.summary[summaryIndex] & (-1L << next);
+        while (summaryBits == 0) {
+            if (++summaryIndex >= this.summary.length) return -1;
+            summaryBits = this.summary[summaryIndex];
+        }
+        word = (summaryIndex << 6) + Long.numberOfTrailingZeros(summaryBits);
+        return (word << 6) + Long.numberOfTrailingZeros(this.freeWords[word]);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb
             = new StringBuilder("IntAllocator{allocated = [");
 
-        int firstClearBit = this.freeSet.nextClearBit(0);
-        if (firstClearBit < this.numberOfBits) {
-            int firstSetAfterThat = this.freeSet.nextSetBit(firstClearBit+1);
-            if (firstSetAfterThat < 0)
-                firstSetAfterThat = this.numberOfBits;
-
-            stringInterval(sb, firstClearBit, firstSetAfterThat);
-            for (int i = this.freeSet.nextClearBit(firstSetAfterThat+1);
-                     i < this.numberOfBits;
-                     i = this.freeSet.nextClearBit(i+1)) {
-                int nextSet = this.freeSet.nextSetBit(i);
-                if (nextSet<0) nextSet = this.numberOfBits;
-                stringInterval(sb.append(", "), i, nextSet);
-                i = nextSet;
+        boolean first = true;
+        int i = 0;
+        while (i < this.numberOfBits) {
+            if (isFree(i)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < this.numberOfBits && !isFree(i)) {
+                i++;
             }
+            if (!first) sb.append(", ");
+            stringInterval(sb, start, i);
+            first = false;
         }
         sb.append("]}");
         return sb.toString();
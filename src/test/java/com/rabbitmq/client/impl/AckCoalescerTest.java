@@ -0,0 +1,145 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import com.rabbitmq.client.Method;
+import com.rabbitmq.client.impl.AMQImpl.Basic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link AckCoalescer}
+ */
+public class AckCoalescerTest {
+
+    private AMQChannel channel;
+    private ScheduledExecutorService scheduler;
+
+    @Before public void init() {
+        channel = mock(AMQChannel.class);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test public void contiguousAcksAreSentAsOneMultipleAck() throws Exception {
+        AckCoalescer coalescer = new AckCoalescer(channel, 3, 1, TimeUnit.HOURS, scheduler);
+        coalescer.ack(2, false);
+        coalescer.ack(3, false);
+        coalescer.ack(1, false);
+        assertEquals("ack 3 multiple", sent());
+    }
+
+    @Test public void acksAfterAGapAreSentOneByOne() throws Exception {
+        AckCoalescer coalescer = new AckCoalescer(channel, 100, 1, TimeUnit.HOURS, scheduler);
+        coalescer.ack(1, false);
+        coalescer.ack(2, false);
+        coalescer.ack(4, false);
+        coalescer.ack(6, false);
+        coalescer.flush();
+        assertEquals("ack 2 multiple, ack 4, ack 6", sent());
+    }
+
+    @Test public void pendingAcksAreSentBeforeNackAndReject() throws Exception {
+        AckCoalescer coalescer = new AckCoalescer(channel, 100, 1, TimeUnit.HOURS, scheduler);
+        coalescer.ack(1, false);
+        coalescer.nack(2, false, true);
+        coalescer.ack(3, false);
+        coalescer.reject(5, false);
+        coalescer.ack(4, false);
+        coalescer.ack(6, false);
+        coalescer.flush();
+        // the prefix covers the rejected and nacked messages, they are not outstanding anymore
+        assertEquals("ack 1 multiple, nack 2 requeue, ack 3 multiple, reject 5, ack 6 multiple", sent());
+    }
+
+    @Test public void multipleAckFromApplicationIsPassedThrough() throws Exception {
+        AckCoalescer coalescer = new AckCoalescer(channel, 100, 1, TimeUnit.HOURS, scheduler);
+        coalescer.ack(4, false);
+        coalescer.ack(3, true);
+        coalescer.ack(5, false);
+        coalescer.flush();
+        assertEquals("ack 4, ack 3 multiple, ack 5 multiple", sent());
+    }
+
+    @Test public void alreadySentAcksAreNotCoveredAgain() throws Exception {
+        AckCoalescer coalescer = new AckCoalescer(channel, 100, 1, TimeUnit.HOURS, scheduler);
+        coalescer.ack(2, false);
+        coalescer.ack(3, false);
+        coalescer.flush();
+        coalescer.ack(1, false);
+        coalescer.flush();
+        // a multiple ack on 3 would be an unknown delivery tag for the broker
+        assertEquals("ack 2, ack 3, ack 1 multiple", sent());
+    }
+
+    @Test public void alreadySentAcksAreNotCoveredAgainWithNacks() throws Exception {
+        AckCoalescer coalescer = new AckCoalescer(channel, 100, 1, TimeUnit.HOURS, scheduler);
+        coalescer.ack(2, false);
+        coalescer.ack(4, false);
+        coalescer.nack(3, false, true);
+        coalescer.ack(1, false);
+        coalescer.flush();
+        coalescer.ack(6, false);
+        coalescer.ack(5, false);
+        coalescer.flush();
+        assertEquals("ack 2, ack 4, nack 3 requeue, ack 1 multiple, ack 6 multiple", sent());
+    }
+
+    @Test public void pendingAcksAreSentAfterMaxDelay() throws Exception {
+        AckCoalescer coalescer = new AckCoalescer(channel, 100, 10, TimeUnit.MILLISECONDS, scheduler);
+        coalescer.ack(1, false);
+        verify(channel, timeout(5000)).transmit(any(Method.class));
+        assertEquals("ack 1 multiple", sent());
+    }
+
+    private String sent() throws Exception {
+        ArgumentCaptor<Method> captor = ArgumentCaptor.forClass(Method.class);
+        verify(channel, atLeast(0)).transmit(captor.capture());
+        List<String> sent = new ArrayList<String>();
+        for (Method method : captor.getAllValues()) {
+            if (method instanceof Basic.Ack) {
+                Basic.Ack ack = (Basic.Ack) method;
+                sent.add("ack " + ack.getDeliveryTag() + (ack.getMultiple() ? " multiple" : ""));
+            } else if (method instanceof Basic.Nack) {
+                Basic.Nack nack = (Basic.Nack) method;
+                sent.add("nack " + nack.getDeliveryTag() + (nack.getMultiple() ? " multiple" : "") +
+                    (nack.getRequeue() ? " requeue" : ""));
+            } else if (method instanceof Basic.Reject) {
+                Basic.Reject reject = (Basic.Reject) method;
+                sent.add("reject " + reject.getDeliveryTag() + (reject.getRequeue() ? " requeue" : ""));
+            }
+        }
+        return String.join(", ", sent);
+    }
+}
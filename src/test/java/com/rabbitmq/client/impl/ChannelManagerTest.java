@@ -0,0 +1,109 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import com.rabbitmq.client.ShutdownSignalException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChannelManagerTest {
+
+    static final int CHANNELS = 10;
+
+    ExecutorService executor;
+    CountDownLatch blocked = new CountDownLatch(1);
+    Thread testThread = Thread.currentThread();
+
+    @After public void tearDown() {
+        blocked.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test public void channelsAreShutDownInParallelWithinOneTimeout() throws Exception {
+        executor = Executors.newFixedThreadPool(CHANNELS);
+        ChannelManager manager = channelManager(200, 1000);
+        ChannelN[] channels = createChannels(manager);
+
+        long start = System.nanoTime();
+        manager.handleSignal(mock(ShutdownSignalException.class));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // sequentially, this would take at least 1000 + 9 * 200 ms
+        assertTrue("shutdown took " + elapsed + " ms", elapsed < 2000);
+        for (ChannelN channel : channels) {
+            verify(channel).notifyListeners();
+        }
+    }
+
+    @Test public void queuedShutdownsRunEvenWhenExecutorIsBusy() throws Exception {
+        // fewer threads than channels, one of them stuck on channel 1
+        executor = Executors.newFixedThreadPool(2);
+        ChannelManager manager = channelManager(100, 300);
+        ChannelN[] channels = createChannels(manager);
+
+        manager.handleSignal(mock(ShutdownSignalException.class));
+
+        for (ChannelN channel : channels) {
+            verify(channel).processShutdownSignal(any(ShutdownSignalException.class), anyBoolean(), anyBoolean());
+            verify(channel).notifyListeners();
+        }
+    }
+
+    ChannelManager channelManager(long shutdownDurationInMs, int channelShutdownTimeout) {
+        ChannelManager manager = new ChannelManager(new ConsumerWorkService(executor, Executors.defaultThreadFactory(), 1000), 0) {
+            @Override
+            protected ChannelN instantiateChannel(AMQConnection connection, int channelNumber, ConsumerWorkService workService) {
+                ChannelN channel = mock(ChannelN.class);
+                when(channel.getChannelNumber()).thenReturn(channelNumber);
+                when(channel.getShutdownLatch()).thenReturn(new CountDownLatch(0));
+                doAnswer(invocation -> {
+                    if (channelNumber == 1 && Thread.currentThread() != testThread) {
+                        // stuck in the executor, never completes in time
+                        blocked.await();
+                    } else {
+                        Thread.sleep(shutdownDurationInMs);
+                    }
+                    return null;
+                }).when(channel).processShutdownSignal(any(ShutdownSignalException.class), anyBoolean(), anyBoolean());
+                return channel;
+            }
+        };
+        manager.setShutdownExecutor(executor);
+        manager.setChannelShutdownTimeout(channelShutdownTimeout);
+        return manager;
+    }
+
+    ChannelN[] createChannels(ChannelManager manager) throws Exception {
+        ChannelN[] channels = new ChannelN[CHANNELS];
+        for (int i = 0; i < CHANNELS; i++) {
+            channels[i] = manager.createChannel(mock(AMQConnection.class));
+        }
+        return channels;
+    }
+}
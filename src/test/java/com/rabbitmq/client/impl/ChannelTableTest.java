@@ -0,0 +1,69 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChannelTableTest {
+
+    @Test public void putGetRemove() {
+        ChannelTable<String> table = new ChannelTable<String>(65535);
+        assertNull(table.get(1));
+        assertTrue(table.putIfAbsent(1, "one"));
+        assertFalse(table.putIfAbsent(1, "other"));
+        assertTrue(table.putIfAbsent(65535, "last"));
+        assertSame("one", table.get(1));
+        assertSame("last", table.get(65535));
+        assertNull(table.get(2));
+
+        assertFalse("only the stored channel can be removed", table.remove(1, "other"));
+        assertSame("one", table.get(1));
+        assertTrue(table.remove(1, "one"));
+        assertNull(table.get(1));
+        assertFalse(table.remove(1, "one"));
+        assertFalse(table.remove(300, "not there"));
+    }
+
+    @Test public void valuesAreInChannelNumberOrder() {
+        ChannelTable<Integer> table = new ChannelTable<Integer>(2047);
+        for (int channelNumber : new int[] {2047, 3, ChannelTable.PAGE_SIZE, 1}) {
+            table.putIfAbsent(channelNumber, channelNumber);
+        }
+        assertEquals(Arrays.asList(1, 3, ChannelTable.PAGE_SIZE, 2047), table.values());
+    }
+
+    @Test public void outOfRange() {
+        ChannelTable<String> table = new ChannelTable<String>(10);
+        assertTrue(table.putIfAbsent(ChannelTable.PAGE_SIZE - 1, "same page"));
+        assertNull(table.get(ChannelTable.PAGE_SIZE));
+        assertNull(table.get(-1));
+        try {
+            table.putIfAbsent(ChannelTable.PAGE_SIZE, "beyond");
+            fail("channel number beyond channel max should be rejected");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ConsumerDispatchPool}
+ */
+public class ConsumerDispatchPoolTest {
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(4);
+
+    @After public void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test public void connectionDoesNotUseMoreThanItsQuota() throws Exception {
+        ConsumerDispatchPool pool = new ConsumerDispatchPool(threads, 2);
+        ExecutorService connection = pool.newConnectionExecutor();
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        final CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            connection.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int r = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(r, Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+
+        connection.shutdown();
+        assertTrue(connection.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test public void busyConnectionDoesNotStarveOthers() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            ConsumerDispatchPool pool = new ConsumerDispatchPool(single, 1);
+            ExecutorService busy = pool.newConnectionExecutor();
+            ExecutorService quiet = pool.newConnectionExecutor();
+
+            // hold the only thread while the tasks are submitted
+            final CountDownLatch release = new CountDownLatch(1);
+            busy.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch done = new CountDownLatch(11);
+            for (int i = 0; i < 10; i++) {
+                busy.execute(task(order, "busy", done));
+            }
+            quiet.execute(task(order, "quiet", done));
+            release.countDown();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue("quiet connection should run second, got " + order, order.indexOf("quiet") <= 1);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private static Runnable task(final List<String> order, final String name, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+                done.countDown();
+            }
+        };
+    }
+}
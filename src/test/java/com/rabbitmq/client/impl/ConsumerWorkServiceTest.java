@@ -0,0 +1,103 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import com.rabbitmq.client.Channel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link ConsumerWorkService}
+ */
+public class ConsumerWorkServiceTest {
+
+    @Test public void virtualThreadsAreSupportedFromJava21() {
+        String version = System.getProperty("java.specification.version");
+        boolean java21OrMore = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        assertEquals(java21OrMore, VirtualThreads.isSupported());
+    }
+
+    @Test public void blockSizeGrowsForFastCallbacksWithBacklog() {
+        WorkBlockSizer sizer = new WorkBlockSizer();
+        assertEquals(WorkBlockSizer.MIN_BLOCK_SIZE, sizer.blockSize(10000));
+
+        // 1 microsecond per callback
+        sizer.blockDone(16, 16_000);
+        assertEquals(WorkBlockSizer.MAX_BLOCK_SIZE, sizer.blockSize(10000));
+        assertEquals(100, sizer.blockSize(100));
+        assertEquals(WorkBlockSizer.MIN_BLOCK_SIZE, sizer.blockSize(3));
+
+        // callbacks slow down to 10 ms, the average follows
+        for (int i = 0; i < 20; i++) {
+            sizer.blockDone(16, 16 * 10_000_000L);
+        }
+        assertEquals(WorkBlockSizer.MIN_BLOCK_SIZE, sizer.blockSize(10000));
+    }
+
+    @Test public void blockedChannelDoesNotHoldBackOthersOnVirtualThreads() throws Exception {
+        // falls back to platform threads on older JVMs, ordering must hold either way
+        ConsumerWorkService service = new ConsumerWorkService(null, Executors.defaultThreadFactory(), -1, 1000, true);
+        try {
+            Channel blocked = mock(Channel.class);
+            Channel other = mock(Channel.class);
+            service.registerKey(blocked);
+            service.registerKey(other);
+
+            final CountDownLatch release = new CountDownLatch(1);
+            service.addWork(blocked, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+
+            final int count = 1000;
+            final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch done = new CountDownLatch(count);
+            for (int i = 0; i < count; i++) {
+                final int item = i;
+                service.addWork(other, new Runnable() {
+                    @Override
+                    public void run() {
+                        executed.add(item);
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < count; i++) {
+                assertEquals(Integer.valueOf(i), executed.get(i));
+            }
+            release.countDown();
+        } finally {
+            service.shutdown();
+        }
+    }
+}
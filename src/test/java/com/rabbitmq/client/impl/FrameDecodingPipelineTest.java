@@ -0,0 +1,105 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import com.rabbitmq.client.AMQP;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link FrameDecodingPipeline}
+ */
+public class FrameDecodingPipelineTest {
+
+    private static final int FRAMES = 2000;
+
+    private AMQConnection connection;
+    private ExecutorService executor;
+
+    @Before public void init() {
+        connection = mock(AMQConnection.class);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test public void framesOfAChannelAreProcessedInOrder() throws Exception {
+        FrameDecodingPipeline pipeline = new FrameDecodingPipeline(connection, executor);
+        CountDownLatch latch = new CountDownLatch(2 * FRAMES);
+        List<Integer> received1 = new CopyOnWriteArrayList<Integer>();
+        List<Integer> received2 = new CopyOnWriteArrayList<Integer>();
+        AMQChannel channel1 = channel(received1, latch);
+        AMQChannel channel2 = channel(received2, latch);
+
+        for (int i = 0; i < FRAMES; i++) {
+            pipeline.handleFrame(channel1, frame(1, i));
+            pipeline.handleFrame(channel2, frame(2, i));
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < FRAMES; i++) {
+            assertEquals(i, received1.get(i).intValue());
+            assertEquals(i, received2.get(i).intValue());
+        }
+        verify(connection, never()).handleIoError(any(Throwable.class));
+    }
+
+    @Test public void failureIsReportedToTheConnection() throws Exception {
+        FrameDecodingPipeline pipeline = new FrameDecodingPipeline(connection, executor);
+        AMQChannel channel = mock(AMQChannel.class);
+        IOException failure = new IOException("malformed frame");
+        doAnswer(invocation -> { throw failure; }).when(channel).handleFrame(any(Frame.class));
+
+        pipeline.handleFrame(channel, frame(1, 0));
+
+        verify(connection, timeout(5000)).handleIoError(failure);
+    }
+
+    private static AMQChannel channel(List<Integer> received, CountDownLatch latch) throws IOException {
+        AMQChannel channel = mock(AMQChannel.class);
+        doAnswer(invocation -> {
+            Frame frame = invocation.getArgument(0);
+            received.add((int) frame.getPayload()[0] << 8 | frame.getPayload()[1] & 0xFF);
+            latch.countDown();
+            return null;
+        }).when(channel).handleFrame(any(Frame.class));
+        return channel;
+    }
+
+    private static Frame frame(int channel, int sequence) {
+        return new Frame(AMQP.FRAME_BODY, channel, new byte[] { (byte) (sequence >> 8), (byte) sequence });
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.MetricsCollector;
+import com.rabbitmq.client.impl.recovery.RecoveryAwareChannelN;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link PrefetchController}
+ */
+public class PrefetchControllerTest {
+
+    @Test public void prefetchIsLoweredWhenDeliveriesPileUpLocally() {
+        assertEquals(75, PrefetchController.nextPrefetch(100, 60, 100, 10, 1000));
+        assertEquals(10, PrefetchController.nextPrefetch(12, 10, 12, 10, 1000));
+    }
+
+    @Test public void prefetchIsRaisedWhenWindowIsFullAndConsumersAreIdle() {
+        assertEquals(125, PrefetchController.nextPrefetch(100, 0, 100, 10, 1000));
+        assertEquals(125, PrefetchController.nextPrefetch(100, 10, 95, 10, 1000));
+        assertEquals(1000, PrefetchController.nextPrefetch(900, 0, 900, 10, 1000));
+        assertEquals(2, PrefetchController.nextPrefetch(1, 0, 1, 1, 1000));
+    }
+
+    @Test public void prefetchIsKeptOtherwise() {
+        // window not full
+        assertEquals(100, PrefetchController.nextPrefetch(100, 0, 50, 10, 1000));
+        // some local backlog, consumers busy
+        assertEquals(100, PrefetchController.nextPrefetch(100, 40, 100, 10, 1000));
+        // bounds reached
+        assertEquals(1000, PrefetchController.nextPrefetch(1000, 0, 1000, 10, 1000));
+        assertEquals(10, PrefetchController.nextPrefetch(10, 8, 10, 10, 1000));
+    }
+
+    @Test public void acknowledgementsOnRecoveryAwareChannelAdjustPrefetch() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MetricsCollector metricsCollector = mock(MetricsCollector.class);
+        RecoveryAwareChannelN channel = new RecoveryAwareChannelN(mock(AMQConnection.class), 1,
+            new ConsumerWorkService(executor, Executors.defaultThreadFactory(), 1000), metricsCollector);
+        // replies to the basic.qos sent when adaptive prefetch is enabled
+        Thread replier = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    channel.handleCompleteInboundCommand(new AMQCommand(new AMQImpl.Basic.QosOk()));
+                    Thread.sleep(10);
+                }
+            } catch (Exception e) {
+                // stopped
+            }
+        });
+        replier.start();
+        try {
+            PrefetchController controller = channel.enableAdaptivePrefetch(10, 100);
+            replier.interrupt();
+            replier.join();
+            assertEquals(10, controller.getPrefetch());
+
+            channel.setDefaultConsumer(new DefaultConsumer(channel));
+            for (long deliveryTag = 1; deliveryTag <= 10; deliveryTag++) {
+                channel.handleCompleteInboundCommand(new AMQCommand(
+                    new AMQImpl.Basic.Deliver("ctag", deliveryTag, false, "x", "rk"),
+                    new AMQP.BasicProperties.Builder().build(), new byte[0]));
+            }
+            // the controller evaluates the window at most once per interval
+            Thread.sleep(PrefetchController.DEFAULT_INTERVAL_NANOS / 1_000_000 + 100);
+            // the window is full and the consumer is idle
+            channel.basicAck(1, false);
+            assertEquals(1, controller.getIncreases());
+            assertEquals(12, controller.getPrefetch());
+            verify(metricsCollector).prefetchChanged(channel, 10, 12);
+        } finally {
+            replier.interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link VariableArrayQueue}
+ */
+public class VariableArrayQueueTest {
+
+    @Test public void fifoOrderIsKeptWhenArrayWrapsAndGrows() throws Exception {
+        VariableArrayQueue<Integer> queue = new VariableArrayQueue<Integer>(Integer.MAX_VALUE);
+        int next = 0;
+        // move the head so that the items wrap around the array before it grows
+        for (int i = 0; i < 10; i++) queue.put(i);
+        for (int i = 0; i < 10; i++) assertEquals(Integer.valueOf(next++), queue.poll());
+        for (int i = 10; i < 1000; i++) queue.put(i);
+        List<Integer> block = new ArrayList<Integer>();
+        assertEquals(16, queue.drainTo(block, 16));
+        for (Integer item : block) assertEquals(Integer.valueOf(next++), item);
+        Integer item;
+        while ((item = queue.poll()) != null) assertEquals(Integer.valueOf(next++), item);
+        assertEquals(1000, next);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test public void arrayShrinksOnlyAfterStayingSmall() throws Exception {
+        VariableArrayQueue<Integer> queue = new VariableArrayQueue<Integer>(Integer.MAX_VALUE);
+        List<Integer> block = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) queue.put(i);
+        queue.drainTo(block, 1000);
+        // a burst followed by a drain keeps the array for the next burst
+        assertEquals(1024, queue.arrayLength());
+        for (int round = 0; round < 15; round++) {
+            for (int i = 0; i < 10; i++) queue.put(i);
+            queue.drainTo(block, 10);
+            assertEquals(1024, queue.arrayLength());
+        }
+        for (int i = 0; i < 10; i++) queue.put(i);
+        queue.drainTo(block, 10);
+        // small for a while, shrinks to twice the recent high-water mark
+        assertEquals(32, queue.arrayLength());
+    }
+
+    @Test public void offerTimesOutWhenFull() throws Exception {
+        VariableArrayQueue<Integer> queue = new VariableArrayQueue<Integer>(2);
+        assertTrue(queue.offer(1, 10, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer(2, 10, TimeUnit.MILLISECONDS));
+        assertFalse(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.size());
+    }
+
+    @Test public void increasingCapacityReleasesBlockedProducer() throws Exception {
+        final VariableArrayQueue<Integer> queue = new VariableArrayQueue<Integer>(1);
+        queue.put(1);
+        final CountDownLatch put = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.put(2);
+                    put.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+        assertFalse(put.await(100, TimeUnit.MILLISECONDS));
+        queue.setCapacity(Integer.MAX_VALUE);
+        assertTrue(put.await(5, TimeUnit.SECONDS));
+        assertEquals(2, queue.size());
+
+        // lowering the capacity keeps the items but blocks new ones
+        queue.setCapacity(1);
+        assertFalse(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertEquals(Integer.valueOf(2), queue.poll());
+        assertTrue(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+    }
+}
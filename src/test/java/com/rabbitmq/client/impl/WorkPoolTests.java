@@ -22,6 +22,14 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -175,4 +183,176 @@ public class WorkPoolTests {
         List<Object> workList = new ArrayList<Object>(16);
         assertNull(this.pool.nextWorkBlock(workList, 1));
     }
+
+    /**
+     * Test items of a client are processed in order and by one thread at a time
+     * when several threads add and process work concurrently.
+     * @throws Exception untested
+     */
+    @Test public void concurrentWorkKeepsPerClientOrdering() throws Exception {
+        final WorkPool<String, Integer> workPool = new WorkPool<String, Integer>(-1);
+        final int clients = 8;
+        final int itemsPerClient = 10000;
+        final Map<String, AtomicInteger> lastSeen = new ConcurrentHashMap<String, AtomicInteger>();
+        final Map<String, AtomicBoolean> inProgress = new ConcurrentHashMap<String, AtomicBoolean>();
+        for (int i = 0; i < clients; i++) {
+            workPool.registerKey("test" + i);
+            workPool.unlimit("test" + i);
+            lastSeen.put("test" + i, new AtomicInteger(-1));
+            inProgress.put("test" + i, new AtomicBoolean(false));
+        }
+        final CountDownLatch done = new CountDownLatch(clients * itemsPerClient);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final ExecutorService workers = Executors.newFixedThreadPool(4);
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                List<Integer> block = new ArrayList<Integer>();
+                String key = workPool.nextWorkBlock(block, 16);
+                if (key == null) return;
+                if (!inProgress.get(key).compareAndSet(false, true)) failed.set(true);
+                for (Integer item : block) {
+                    if (lastSeen.get(key).getAndSet(item) != item - 1) failed.set(true);
+                    done.countDown();
+                }
+                inProgress.get(key).set(false);
+                if (workPool.finishWorkBlock(key)) workers.execute(this);
+            }
+        };
+        ExecutorService producers = Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            final String key = "test" + i;
+            producers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int item = 0; item < itemsPerClient; item++) {
+                        if (workPool.addWorkItem(key, item)) workers.execute(worker);
+                    }
+                }
+            });
+        }
+        try {
+            assertTrue("Not all items processed", done.await(30, TimeUnit.SECONDS));
+            assertFalse("Items processed out of order or concurrently", failed.get());
+        } finally {
+            producers.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Test clients are served in turn, with blocks proportional to their weight
+     * @throws Exception untested
+     */
+    @Test public void weightedRoundRobin() throws Exception {
+        this.pool.registerKey("busy");
+        this.pool.registerKey("critical");
+        this.pool.setWeight("critical", 3);
+        for (int i = 0; i < 100; i++) {
+            this.pool.addWorkItem("busy", new Object());
+            this.pool.addWorkItem("critical", new Object());
+        }
+
+        List<Object> workList = new ArrayList<Object>();
+        List<String> turns = new ArrayList<String>();
+        int busy = 0, critical = 0;
+        for (int i = 0; i < 6; i++) {
+            workList.clear();
+            String key = this.pool.nextWorkBlock(workList, 2);
+            turns.add(key);
+            if ("busy".equals(key)) busy += workList.size(); else critical += workList.size();
+            this.pool.finishWorkBlock(key);
+        }
+        // the weighted client jumps the queue when it becomes ready, then takes turns
+        assertEquals("critical,busy,critical,busy,critical,busy", String.join(",", turns));
+        assertEquals(3 * 2, busy);
+        assertEquals(3 * 6, critical);
+
+        LatencyHistogram latency = this.pool.getReadyLatency("critical");
+        assertEquals(3, latency.getCount());
+    }
+
+    /**
+     * Test a weighted client with little work is not delayed by busy clients
+     * @throws Exception untested
+     */
+    @Test public void weightedClientIsServedFirstUnderContention() throws Exception {
+        // served on the next turn instead of after all the busy clients
+        assertEquals(1, turnsUntilCriticalIsServed(10));
+        assertEquals(9, turnsUntilCriticalIsServed(1));
+    }
+
+    private int turnsUntilCriticalIsServed(int weight) throws Exception {
+        WorkPool<String, Object> pool = new WorkPool<String, Object>(-1);
+        pool.registerKey("critical");
+        pool.setWeight("critical", weight);
+        for (int i = 0; i < 8; i++) {
+            pool.registerKey("busy" + i);
+            for (int j = 0; j < 100; j++) {
+                pool.addWorkItem("busy" + i, new Object());
+            }
+        }
+        List<Object> workList = new ArrayList<Object>();
+        // the busy clients take turns
+        for (int turn = 0; turn < 3; turn++) {
+            workList.clear();
+            String key = pool.nextWorkBlock(workList, 1);
+            assertEquals("busy" + turn, key);
+            pool.finishWorkBlock(key);
+        }
+        pool.addWorkItem("critical", new Object());
+        for (int turn = 1; turn <= 10; turn++) {
+            workList.clear();
+            String key = pool.nextWorkBlock(workList, 1);
+            pool.finishWorkBlock(key);
+            if ("critical".equals(key)) {
+                return turn;
+            }
+        }
+        return -1;
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void weightMustBePositive() {
+        this.pool.registerKey("test");
+        this.pool.setWeight("test", 0);
+    }
+
+    /**
+     * Test back-pressure listener replaces blocking on full queues
+     * @throws Exception untested
+     */
+    @Test public void backPressureListenerIsToldOfHighAndLowWaterMarks() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        WorkPool<String, Object> pool = new WorkPool<String, Object>(-1, new WorkPool.BackPressureListener<String>() {
+            @Override
+            public void overloaded(String key) {
+                events.add("overloaded " + key);
+            }
+
+            @Override
+            public void relieved(String key) {
+                events.add("relieved " + key);
+            }
+        });
+        pool.registerKey("test");
+        // would block without a listener
+        for (int i = 0; i < 2 * WorkPool.HIGH_WATER_MARK; i++) {
+            pool.addWorkItem("test", new Object());
+        }
+        assertTrue(pool.isOverloaded("test"));
+        assertEquals(1, events.size());
+
+        List<Object> workList = new ArrayList<Object>();
+        int processed = 0;
+        while (processed < 2 * WorkPool.HIGH_WATER_MARK - WorkPool.LOW_WATER_MARK) {
+            workList.clear();
+            String key = pool.nextWorkBlock(workList, 100);
+            processed += workList.size();
+            pool.finishWorkBlock(key);
+        }
+        assertFalse(pool.isOverloaded("test"));
+        assertEquals(2, events.size());
+        assertEquals("overloaded test", events.get(0));
+        assertEquals("relieved test", events.get(1));
+    }
 }
@@ -0,0 +1,88 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.impl.recovery;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RecordedBindings} and {@link RecordedConsumers}
+ */
+public class RecordedTopologyTest {
+
+    @Test public void recordingEquivalentBindingReplacesIt() {
+        RecordedBindings bindings = new RecordedBindings();
+        bindings.record(binding("q", "x", "a"));
+        bindings.record(binding("q", "x", "b"));
+        RecordedBinding latest = binding("q", "x", "a");
+        bindings.record(latest);
+        assertEquals(2, bindings.size());
+        assertSame(latest, bindings.snapshot().get(1));
+        assertTrue(bindings.remove(binding("q", "x", "a")));
+        assertFalse(bindings.remove(binding("q", "x", "a")));
+        assertEquals(1, bindings.size());
+    }
+
+    @Test public void bindingsAreIndexedBySourceAndDestination() {
+        RecordedBindings bindings = new RecordedBindings();
+        bindings.record(binding("q1", "x1", "a"));
+        bindings.record(binding("q1", "x2", "a"));
+        bindings.record(binding("q2", "x2", "a"));
+
+        Set<RecordedBinding> removed = bindings.removeWithDestination("q1");
+        assertEquals(2, removed.size());
+        assertFalse(bindings.hasSource("x1"));
+        assertTrue(bindings.hasSource("x2"));
+        assertTrue(bindings.removeWithDestination("q1").isEmpty());
+
+        bindings.renameDestination("q2", "q3");
+        assertTrue(bindings.removeWithDestination("q2").isEmpty());
+        assertEquals("q3", bindings.snapshot().get(0).getDestination());
+        assertTrue(bindings.remove(binding("q3", "x2", "a")));
+        assertFalse(bindings.hasSource("x2"));
+    }
+
+    @Test public void consumersAreIndexedByQueue() {
+        RecordedConsumers consumers = new RecordedConsumers();
+        RecordedConsumer c1 = new RecordedConsumer(null, "q1");
+        RecordedConsumer c2 = new RecordedConsumer(null, "q1");
+        consumers.record("c1", c1);
+        consumers.record("c2", c2);
+        assertTrue(consumers.hasConsumersOn("q1"));
+
+        consumers.renameQueue("q1", "q2");
+        assertFalse(consumers.hasConsumersOn("q1"));
+        assertTrue(consumers.hasConsumersOn("q2"));
+        assertEquals("q2", c1.getQueue());
+
+        consumers.retag("c1", "c3");
+        assertSame(c1, consumers.snapshot().get("c3"));
+        assertSame(c2, consumers.remove("c2"));
+        assertSame(c1, consumers.remove("c3"));
+        assertFalse(consumers.hasConsumersOn("q2"));
+        assertEquals(0, consumers.size());
+    }
+
+    private static RecordedBinding binding(String queue, String exchange, String routingKey) {
+        return new RecordedQueueBinding(null).destination(queue).source(exchange).routingKey(routingKey);
+    }
+}
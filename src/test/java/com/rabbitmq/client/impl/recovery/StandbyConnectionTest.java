@@ -0,0 +1,71 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+
+package com.rabbitmq.client.impl.recovery;
+
+import com.rabbitmq.client.Connection;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link StandbyConnection}
+ */
+public class StandbyConnectionTest {
+
+    RecoveryAwareAMQConnectionFactory factory = mock(RecoveryAwareAMQConnectionFactory.class);
+    StandbyConnection standby = new StandbyConnection(factory, Executors.defaultThreadFactory());
+
+    @After public void tearDown() {
+        standby.close();
+    }
+
+    @Test public void nextStandbyAvoidsConnectionActivatedByRecovery() throws Exception {
+        Connection active = mock(Connection.class);
+        RecoveryAwareAMQConnection first = openConnection();
+        RecoveryAwareAMQConnection second = openConnection();
+        when(factory.newConnection(any())).thenReturn(first, second);
+
+        standby.start(active);
+        verify(factory, timeout(5000)).newConnection(active);
+        RecoveryAwareAMQConnection taken;
+        while ((taken = standby.take()) == null) {
+            Thread.sleep(10);
+        }
+        assertSame(first, taken);
+
+        // e.g. the standby connection died too and recovery opened a new connection
+        Connection recovered = mock(Connection.class);
+        standby.activated(recovered);
+        verify(factory, timeout(5000)).newConnection(recovered);
+        verify(factory, never()).newConnection(first);
+    }
+
+    static RecoveryAwareAMQConnection openConnection() {
+        RecoveryAwareAMQConnection connection = mock(RecoveryAwareAMQConnection.class);
+        when(connection.isOpen()).thenReturn(true);
+        return connection;
+    }
+}
@@ -15,9 +15,11 @@
 
 package com.rabbitmq.client.test;
 
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.ChannelContinuationTimeoutException;
 import com.rabbitmq.client.Command;
 import com.rabbitmq.client.Method;
+import com.rabbitmq.client.ShutdownSignalException;
 import com.rabbitmq.client.impl.AMQChannel;
 import com.rabbitmq.client.impl.AMQCommand;
 import com.rabbitmq.client.impl.AMQConnection;
@@ -27,10 +29,16 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
@@ -70,7 +78,8 @@ public class AMQChannelTest {
             assertThat((DummyAmqChannel) e.getChannel(), is(channel));
             assertThat(e.getChannelNumber(), is(channel.getChannelNumber()));
             assertThat(e.getMethod(), is(method));
-            assertNull("outstanding RPC should have been cleaned", channel.nextOutstandingRpc());
+            // the timed out RPC waits in the pipeline for its reply, which is dropped
+            assertThat(channel.getOutstandingRpcCount(), is(1));
         }
     }
 
@@ -129,7 +138,8 @@ public class AMQChannelTest {
             assertThat((DummyAmqChannel) e.getChannel(), is(channel));
             assertThat(e.getChannelNumber(), is(channel.getChannelNumber()));
             assertThat(e.getMethod(), is(method));
-            assertNull("outstanding RPC should have been cleaned", channel.nextOutstandingRpc());
+            // the timed out RPC waits in the pipeline for its reply, which is dropped
+            assertThat(channel.getOutstandingRpcCount(), is(1));
         }
 
         // now do a basic.consume request and have the queue.declareok returned instead
@@ -161,6 +171,92 @@ public class AMQChannelTest {
         assertThat(rpcResponse.getMethod(), is(response2));
     }
 
+    @Test public void rpcsArePipelinedAndRepliesMatchedInOrder() throws Exception {
+        AMQConnection connection = mock(AMQConnection.class);
+        DummyAmqChannel channel = new DummyAmqChannel(connection, 1);
+
+        int count = 10;
+        List<CompletableFuture<Command>> futures = new ArrayList<CompletableFuture<Command>>();
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<Command> future = new CompletableFuture<Command>();
+            channel.asyncRpc(new AMQImpl.Queue.Declare.Builder().queue("q" + i).build(), future);
+            futures.add(future);
+        }
+        // no request waited for the reply of the previous one
+        assertThat(channel.getOutstandingRpcCount(), is(count));
+
+        for (int i = 0; i < count; i++) {
+            channel.handleCompleteInboundCommand(new AMQCommand(new AMQImpl.Queue.DeclareOk.Builder()
+                .queue("q" + i).consumerCount(0).messageCount(0).build()));
+        }
+        for (int i = 0; i < count; i++) {
+            AMQP.Queue.DeclareOk declareOk = (AMQP.Queue.DeclareOk) futures.get(i).get(1, TimeUnit.SECONDS).getMethod();
+            assertThat(declareOk.getQueue(), is("q" + i));
+        }
+        assertFalse(channel.isOutstandingRpc());
+    }
+
+    @Test public void lateReplyOfTimedOutRpcIsNotGivenToNextRpc() throws Exception {
+        int rpcTimeout = 100;
+        AMQConnection connection = mock(AMQConnection.class);
+        when(connection.getChannelRpcTimeout()).thenReturn(rpcTimeout);
+        final DummyAmqChannel channel = new DummyAmqChannel(connection, 1);
+
+        // the first declaration is sent, the second one is pipelined behind it
+        CompletableFuture<AMQCommand> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return channel.rpc(new AMQImpl.Queue.Declare.Builder().queue("q1").build());
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, scheduler);
+        waitAtMost(() -> channel.getOutstandingRpcCount() == 1);
+        CompletableFuture<Command> second = new CompletableFuture<Command>();
+        channel.asyncRpc(new AMQImpl.Queue.Declare.Builder().queue("q2").build(), second);
+
+        try {
+            first.get(5, TimeUnit.SECONDS);
+            fail("Should time out and throw an exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(ChannelContinuationTimeoutException.class));
+        }
+
+        // the replies arrive in order, the first one after the timeout
+        channel.handleCompleteInboundCommand(new AMQCommand(new AMQImpl.Queue.DeclareOk.Builder()
+            .queue("q1").consumerCount(0).messageCount(0).build()));
+        assertFalse(second.isDone());
+        channel.handleCompleteInboundCommand(new AMQCommand(new AMQImpl.Queue.DeclareOk.Builder()
+            .queue("q2").consumerCount(0).messageCount(0).build()));
+        AMQP.Queue.DeclareOk declareOk = (AMQP.Queue.DeclareOk) second.get(1, TimeUnit.SECONDS).getMethod();
+        assertThat(declareOk.getQueue(), is("q2"));
+        assertFalse(channel.isOutstandingRpc());
+    }
+
+    static void waitAtMost(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Waited 5 seconds for condition");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test public void shutdownNotifiesAllPipelinedRpcs() throws Exception {
+        AMQConnection connection = mock(AMQConnection.class);
+        DummyAmqChannel channel = new DummyAmqChannel(connection, 1);
+
+        CompletableFuture<Command> future1 = new CompletableFuture<Command>();
+        CompletableFuture<Command> future2 = new CompletableFuture<Command>();
+        channel.asyncRpc(new AMQImpl.Queue.Declare.Builder().queue("q1").build(), future1);
+        channel.asyncRpc(new AMQImpl.Queue.Declare.Builder().queue("q2").build(), future2);
+
+        channel.notifyOutstandingRpc(new ShutdownSignalException(false, false, null, channel));
+        assertTrue(future1.isCompletedExceptionally());
+        assertTrue(future2.isCompletedExceptionally());
+        assertFalse(channel.isOutstandingRpc());
+    }
+
     static class DummyAmqChannel extends AMQChannel {
 
         public DummyAmqChannel(AMQConnection connection, int channelNumber) {
@@ -59,7 +59,13 @@ import org.junit.runners.Suite;
     ClientVersionTest.class,
     TestUtilsTest.class,
     StrictExceptionHandlerTest.class,
-    NoAutoRecoveryWhenTcpWindowIsFullTest.class
+    NoAutoRecoveryWhenTcpWindowIsFullTest.class,
+    TopologyBatchTest.class,
+    LowAllocationConsumerTest.class,
+    InlineDispatchConsumerTest.class,
+    ConsumerBackPressureTest.class,
+    ConnectionPoolTest.class,
+    StripedPublisherTest.class
 })
 public class ClientTests {
 
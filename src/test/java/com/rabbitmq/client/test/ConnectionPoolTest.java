@@ -0,0 +1,130 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.test;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.ConnectionPool;
+import com.rabbitmq.client.impl.StandardMetricsCollector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolTest {
+
+    ConnectionFactory factory;
+    List<Connection> connections;
+    StandardMetricsCollector metrics;
+
+    @Before public void init() throws Exception {
+        factory = mock(ConnectionFactory.class);
+        metrics = new StandardMetricsCollector();
+        when(factory.getMetricsCollector()).thenReturn(metrics);
+        connections = new ArrayList<Connection>();
+        for (int i = 0; i < 2; i++) {
+            Connection connection = mock(Connection.class);
+            when(connection.isOpen()).thenReturn(true);
+            when(connection.createChannel()).thenAnswer(invocation -> {
+                Channel channel = mock(Channel.class);
+                when(channel.isOpen()).thenReturn(true);
+                return channel;
+            });
+            connections.add(connection);
+        }
+        when(factory.newConnection()).thenReturn(connections.get(0), connections.get(1));
+    }
+
+    @Test public void channelsAreReusedAndSpreadOverConnections() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(factory, 2, 2)) {
+            ConnectionPool.Lease lease1 = pool.lease(1, TimeUnit.SECONDS);
+            ConnectionPool.Lease lease2 = pool.lease(1, TimeUnit.SECONDS);
+            verify(connections.get(0), times(1)).createChannel();
+            verify(connections.get(1), times(1)).createChannel();
+            assertEquals(2, pool.getLeasedChannelCount());
+            assertEquals(2, metrics.getLeasedChannels().getCount());
+
+            Channel channel = lease1.getChannel();
+            lease1.close();
+            lease1.close();
+            assertEquals(1, pool.getIdleChannelCount());
+            verify(channel).clearConfirmListeners();
+
+            ConnectionPool.Lease lease3 = pool.lease(1, TimeUnit.SECONDS);
+            assertSame(channel, lease3.getChannel());
+            lease2.close();
+            lease3.close();
+            assertEquals(0, pool.getLeasedChannelCount());
+            assertEquals(0, metrics.getLeasedChannels().getCount());
+            assertEquals(3, metrics.getChannelLeaseWaits().getCount());
+        }
+    }
+
+    @Test public void leaseWaitsForAReturnedChannel() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(factory, 2, 1)) {
+            pool.lease(1, TimeUnit.SECONDS);
+            ConnectionPool.Lease lease = pool.lease(1, TimeUnit.SECONDS);
+            try {
+                pool.lease(50, TimeUnit.MILLISECONDS);
+                fail("all channels are leased, lease should have timed out");
+            } catch (TimeoutException e) {
+                // OK
+            }
+            new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                lease.close();
+            }).start();
+            assertSame(lease.getChannel(), pool.lease(5, TimeUnit.SECONDS).getChannel());
+        }
+    }
+
+    @Test public void closedAndIdleChannelsAreDiscarded() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(factory, 2, 2, true, 50, TimeUnit.MILLISECONDS)) {
+            ConnectionPool.Lease lease = pool.lease(1, TimeUnit.SECONDS);
+            Channel closed = lease.getChannel();
+            verify(closed).confirmSelect();
+            when(closed.isOpen()).thenReturn(false);
+            lease.close();
+            assertEquals(0, pool.getIdleChannelCount());
+
+            lease = pool.lease(1, TimeUnit.SECONDS);
+            Channel idle = lease.getChannel();
+            assertNotSame(closed, idle);
+            lease.close();
+            Thread.sleep(100);
+            lease = pool.lease(1, TimeUnit.SECONDS);
+            assertNotSame(idle, lease.getChannel());
+            verify(idle).close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.test;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.impl.AMQCommand;
+import com.rabbitmq.client.impl.AMQConnection;
+import com.rabbitmq.client.impl.AMQImpl;
+import com.rabbitmq.client.impl.ChannelN;
+import com.rabbitmq.client.impl.ConsumerWorkService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ConsumerBackPressureTest {
+
+    ExecutorService executor;
+
+    @Before public void init() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test public void overloadedChannelIsThrottledWithoutBlockingTheReader() throws Exception {
+        ConsumerWorkService workService = new ConsumerWorkService(executor, Executors.defaultThreadFactory(),
+            -1, 1000, false, null, true);
+        ChannelN channel = new ChannelN(mock(AMQConnection.class), 1, workService);
+
+        int deliveries = 2000;
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch processed = new CountDownLatch(deliveries);
+        channel.setDefaultConsumer(new DefaultConsumer(channel) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body)
+                throws IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                processed.countDown();
+            }
+        });
+
+        // more than the bounded work pool would accept without blocking
+        for (int i = 1; i <= deliveries; i++) {
+            channel.handleCompleteInboundCommand(new AMQCommand(
+                new AMQImpl.Basic.Deliver("ctag", i, false, "x", "rk"),
+                new AMQP.BasicProperties.Builder().build(), new byte[0]));
+        }
+        assertTrue(workService.isOverloaded(channel));
+        // prefetch lowered
+        assertEquals(1, channel.getOutstandingRpcCount());
+        channel.handleCompleteInboundCommand(new AMQCommand(new AMQImpl.Basic.QosOk()));
+        assertEquals(0, channel.getOutstandingRpcCount());
+
+        release.countDown();
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+        // the channel is relieved when the last work block finishes
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((workService.isOverloaded(channel) || channel.getOutstandingRpcCount() == 0)
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(workService.isOverloaded(channel));
+        // prefetch restored
+        assertEquals(1, channel.getOutstandingRpcCount());
+    }
+
+}
@@ -0,0 +1,132 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.test;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.InlineDispatchConsumer;
+import com.rabbitmq.client.impl.AMQCommand;
+import com.rabbitmq.client.impl.AMQConnection;
+import com.rabbitmq.client.impl.AMQImpl;
+import com.rabbitmq.client.impl.ChannelN;
+import com.rabbitmq.client.impl.ConsumerWorkService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class InlineDispatchConsumerTest {
+
+    ExecutorService executor;
+
+    @Before public void init() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test public void deliveryIsDispatchedOnCallingThreadAndBlockingCallsAreRejected() throws Exception {
+        ConsumerWorkService workService = new ConsumerWorkService(executor, Executors.defaultThreadFactory(), 1000);
+        ChannelN channel = new ChannelN(mock(AMQConnection.class), 1, workService);
+
+        AtomicReference<Thread> dispatchThread = new AtomicReference<Thread>();
+        AtomicReference<Exception> blockingCallError = new AtomicReference<Exception>();
+        class TestConsumer extends DefaultConsumer implements InlineDispatchConsumer {
+
+            TestConsumer() {
+                super(channel);
+            }
+
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                dispatchThread.set(Thread.currentThread());
+                try {
+                    channel.queueDeclare();
+                } catch (IOException | RuntimeException e) {
+                    blockingCallError.set(e);
+                }
+            }
+        }
+        channel.setDefaultConsumer(new TestConsumer());
+
+        channel.handleCompleteInboundCommand(new AMQCommand(
+            new AMQImpl.Basic.Deliver("ctag", 1L, false, "x", "rk"),
+            new AMQP.BasicProperties.Builder().build(),
+            new byte[0]));
+
+        // the callback ran synchronously, without going through the executor
+        assertThat(dispatchThread.get(), is(Thread.currentThread()));
+        assertThat(blockingCallError.get(), instanceOf(IllegalStateException.class));
+    }
+
+    @Test public void channelCanBeClosedFromInlineCallback() throws Exception {
+        ConsumerWorkService workService = new ConsumerWorkService(executor, Executors.defaultThreadFactory(), 1000);
+        ChannelN channel = new ChannelN(mock(AMQConnection.class), 1, workService);
+        CountDownLatch shutdownLatch = new CountDownLatch(1);
+        channel.addShutdownListener(cause -> shutdownLatch.countDown());
+
+        AtomicReference<Exception> closeError = new AtomicReference<Exception>();
+        class TestConsumer extends DefaultConsumer implements InlineDispatchConsumer {
+
+            TestConsumer() {
+                super(channel);
+            }
+
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                try {
+                    channel.close();
+                } catch (IOException | TimeoutException | RuntimeException e) {
+                    closeError.set(e);
+                }
+            }
+        }
+        channel.setDefaultConsumer(new TestConsumer());
+
+        long start = System.nanoTime();
+        channel.handleCompleteInboundCommand(new AMQCommand(
+            new AMQImpl.Basic.Deliver("ctag", 1L, false, "x", "rk"),
+            new AMQP.BasicProperties.Builder().build(),
+            new byte[0]));
+
+        // close does not wait for the reply the calling thread would read
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000, is(true));
+        assertThat(closeError.get(), nullValue());
+        assertThat(channel.isOpen(), is(false));
+        assertThat(shutdownLatch.getCount(), is(1L));
+
+        // the reply completes the close
+        channel.handleCompleteInboundCommand(new AMQCommand(new AMQImpl.Channel.CloseOk()));
+        assertThat(shutdownLatch.getCount(), is(0L));
+    }
+
+}
@@ -0,0 +1,95 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.test;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.LowAllocationConsumer;
+import com.rabbitmq.client.impl.AMQCommand;
+import com.rabbitmq.client.impl.AMQConnection;
+import com.rabbitmq.client.impl.AMQImpl;
+import com.rabbitmq.client.impl.ChannelN;
+import com.rabbitmq.client.impl.ConsumerWorkService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class LowAllocationConsumerTest {
+
+    ExecutorService executor;
+
+    @Before public void init() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test public void deliveryFieldsAreDispatchedUnpacked() throws Exception {
+        ConsumerWorkService workService = new ConsumerWorkService(executor, Executors.defaultThreadFactory(), 1000);
+        ChannelN channel = new ChannelN(mock(AMQConnection.class), 1, workService);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<String> received = new AtomicReference<String>();
+        AtomicBoolean envelopeCalled = new AtomicBoolean(false);
+        class TestConsumer extends DefaultConsumer implements LowAllocationConsumer {
+
+            TestConsumer() {
+                super(channel);
+            }
+
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                envelopeCalled.set(true);
+            }
+
+            @Override
+            public void handleDelivery(String consumerTag, long deliveryTag, boolean redelivered, String exchange,
+                                       String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                received.set(consumerTag + " " + deliveryTag + " " + redelivered + " " +
+                    exchange + " " + routingKey + " " + new String(body, "UTF-8"));
+                latch.countDown();
+            }
+        }
+        channel.setDefaultConsumer(new TestConsumer());
+
+        channel.handleCompleteInboundCommand(new AMQCommand(
+            new AMQImpl.Basic.Deliver("ctag", 42L, true, "x", "rk"),
+            new AMQP.BasicProperties.Builder().build(),
+            "hello".getBytes("UTF-8")));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(received.get(), is("ctag 42 true x rk hello"));
+        assertFalse(envelopeCalled.get());
+    }
+
+}
@@ -18,6 +18,7 @@ package com.rabbitmq.client.test;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.MetricsCollector;
+import com.rabbitmq.client.RecoveryPhase;
 import com.rabbitmq.client.impl.AbstractMetricsCollector;
 import com.rabbitmq.client.impl.MicrometerMetricsCollector;
 import com.rabbitmq.client.impl.StandardMetricsCollector;
@@ -27,6 +28,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -229,6 +231,48 @@ public class MetricsCollectorTest {
         }
     }
 
+    @Test public void recoveryPhases() {
+        AbstractMetricsCollector metrics = factory.create();
+        Connection connection = mock(Connection.class);
+
+        metrics.recoveryPhase(connection, RecoveryPhase.QUEUES, 10, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.recoveryPhase(connection, RecoveryPhase.QUEUES, 5, TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recoveryPhase(connection, RecoveryPhase.CONSUMERS, 5, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(recoveryPhaseCount(metrics, RecoveryPhase.QUEUES), is(2L));
+        assertThat(recoveryPhaseCount(metrics, RecoveryPhase.CONSUMERS), is(1L));
+        assertThat(recoveryPhaseCount(metrics, RecoveryPhase.BINDINGS), is(0L));
+    }
+
+    @Test public void prefetchChanges() {
+        AbstractMetricsCollector metrics = factory.create();
+        Channel channel = mock(Channel.class);
+
+        metrics.prefetchChanged(channel, 100, 125);
+        metrics.prefetchChanged(channel, 125, 156);
+        metrics.prefetchChanged(channel, 156, 117);
+
+        if (metrics instanceof StandardMetricsCollector) {
+            StandardMetricsCollector standard = (StandardMetricsCollector) metrics;
+            assertThat(standard.getPrefetchIncreases().getCount(), is(2L));
+            assertThat(standard.getPrefetchDecreases().getCount(), is(1L));
+            assertThat(standard.getPrefetchCounts().getCount(), is(3L));
+        } else {
+            MicrometerMetricsCollector micrometer = (MicrometerMetricsCollector) metrics;
+            assertThat(micrometer.getPrefetchIncreases().count(), is(2.0));
+            assertThat(micrometer.getPrefetchDecreases().count(), is(1.0));
+            assertThat(micrometer.getPrefetchCounts().count(), is(3L));
+        }
+    }
+
+    long recoveryPhaseCount(MetricsCollector metrics, RecoveryPhase phase) {
+        if (metrics instanceof StandardMetricsCollector) {
+            return ((StandardMetricsCollector) metrics).getRecoveryPhase(phase).getCount();
+        } else {
+            return ((MicrometerMetricsCollector) metrics).getRecoveryPhase(phase).count();
+        }
+    }
+
     long channels(MetricsCollector metrics) {
         if (metrics instanceof StandardMetricsCollector) {
             return ((StandardMetricsCollector) metrics).getChannels().getCount();
@@ -16,13 +16,18 @@
 package com.rabbitmq.client.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
+import com.rabbitmq.client.RecoveryAttemptLimiter;
 import com.rabbitmq.client.RecoveryDelayHandler;
+import com.rabbitmq.client.RecoveryDelayHandler.DecorrelatedJitterBackoffDelayHandler;
 import com.rabbitmq.client.RecoveryDelayHandler.DefaultRecoveryDelayHandler;
 import com.rabbitmq.client.RecoveryDelayHandler.ExponentialBackoffDelayHandler;
+import com.rabbitmq.client.RecoveryDelayHandler.FullJitterBackoffDelayHandler;
 
 import org.junit.Test;
 
@@ -70,4 +75,51 @@ public class RecoveryDelayHandlerTest {
     public void testExponentialBackoffDelayHandler_sequence_empty() {
         new ExponentialBackoffDelayHandler(Collections.<Long>emptyList());
     }
+
+    @Test
+    public void testFullJitterBackoffDelayHandler() {
+        final RecoveryDelayHandler handler = new FullJitterBackoffDelayHandler(100, 1000);
+        for (int i = 0; i < 100; i++) {
+            assertBetween(0, 100, handler.getDelay(0));
+            assertBetween(0, 400, handler.getDelay(2));
+            assertBetween(0, 1000, handler.getDelay(10));
+            assertBetween(0, 1000, handler.getDelay(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testDecorrelatedJitterBackoffDelayHandler() {
+        final RecoveryDelayHandler handler = new DecorrelatedJitterBackoffDelayHandler(100, 1000);
+        for (int i = 0; i < 100; i++) {
+            long previous = handler.getDelay(0);
+            assertBetween(100, 300, previous);
+            for (int attempt = 1; attempt < 10; attempt++) {
+                long delay = handler.getDelay(attempt);
+                assertBetween(100, Math.min(1000, previous * 3), delay);
+                previous = delay;
+            }
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testJitterBackoffDelayHandler_capLowerThanBase() {
+        new DecorrelatedJitterBackoffDelayHandler(1000, 100);
+    }
+
+    @Test
+    public void testRecoveryAttemptLimiter() throws InterruptedException {
+        final RecoveryAttemptLimiter limiter = new RecoveryAttemptLimiter(10, 2);
+        assertEquals(2, limiter.availableTokens());
+        long start = System.nanoTime();
+        limiter.acquire();
+        limiter.acquire();
+        assertEquals(0, limiter.availableTokens());
+        limiter.acquire();
+        // third attempt waits for a token, i.e. about 100 ms
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+    }
+
+    private static void assertBetween(long min, long max, long value) {
+        assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+    }
 }
@@ -0,0 +1,170 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.test;
+
+import com.rabbitmq.client.Address;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.StripedPublisher;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StripedPublisherTest {
+
+    static final List<Address> ADDRESSES = Arrays.asList(
+        new Address("node1"), new Address("node2"), new Address("node3")
+    );
+
+    ConnectionFactory factory;
+    List<Connection> connections;
+    List<Channel> channels;
+    List<List<Address>> connectedTo;
+
+    @Before public void init() throws Exception {
+        factory = mock(ConnectionFactory.class);
+        connections = new ArrayList<Connection>();
+        channels = new ArrayList<Channel>();
+        connectedTo = new ArrayList<List<Address>>();
+        when(factory.newConnection(anyList(), anyString())).thenAnswer(invocation -> {
+            connectedTo.add(new ArrayList<Address>(invocation.<List<Address>>getArgument(0)));
+            Connection connection = mock(Connection.class);
+            Channel channel = mock(Channel.class);
+            when(channel.waitForConfirms()).thenReturn(true);
+            when(channel.waitForConfirms(anyLong())).thenReturn(true);
+            when(connection.createChannel()).thenReturn(channel);
+            connections.add(connection);
+            channels.add(channel);
+            return connection;
+        });
+    }
+
+    @Test public void routingKeysAreSpreadOverStripesConsistently() throws Exception {
+        try (StripedPublisher publisher = new StripedPublisher(factory, ADDRESSES, 4)) {
+            assertEquals(4, publisher.getStripeCount());
+            for (Channel channel : channels) {
+                verify(channel).confirmSelect();
+            }
+            Set<Integer> used = new HashSet<Integer>();
+            for (int i = 0; i < 1000; i++) {
+                String routingKey = "key." + i;
+                int stripe = publisher.getStripe(routingKey);
+                assertEquals(stripe, publisher.getStripe(routingKey));
+                used.add(stripe);
+            }
+            assertEquals(4, used.size());
+
+            String routingKey = "orders.42";
+            int stripe = publisher.getStripe(routingKey);
+            publisher.basicPublish("orders", routingKey, null, new byte[0]);
+            publisher.basicPublish("orders", routingKey, null, new byte[0]);
+            for (int i = 0; i < channels.size(); i++) {
+                if (i == stripe) {
+                    verify(channels.get(i), times(2))
+                        .basicPublish(eq("orders"), eq(routingKey), eq(false), isNull(), eq(new byte[0]));
+                } else {
+                    verify(channels.get(i), never())
+                        .basicPublish(anyString(), anyString(), eq(false), isNull(), eq(new byte[0]));
+                }
+            }
+        }
+    }
+
+    @Test public void stripesPreferDifferentAddresses() throws Exception {
+        try (StripedPublisher publisher = new StripedPublisher(factory, ADDRESSES, 4)) {
+            assertEquals(4, publisher.getStripeCount());
+            assertEquals(ADDRESSES, connectedTo.get(0));
+            assertEquals(Arrays.asList(ADDRESSES.get(1), ADDRESSES.get(2), ADDRESSES.get(0)), connectedTo.get(1));
+            assertEquals(ADDRESSES.get(2), connectedTo.get(2).get(0));
+            assertEquals(ADDRESSES, connectedTo.get(3));
+        }
+        for (Connection connection : connections) {
+            verify(connection).close();
+        }
+    }
+
+    @Test public void confirmsAreCombined() throws Exception {
+        try (StripedPublisher publisher = new StripedPublisher(factory, ADDRESSES, 3)) {
+            assertTrue(publisher.waitForConfirms());
+            assertTrue(publisher.waitForConfirms(1000));
+
+            when(channels.get(1).waitForConfirms(anyLong())).thenReturn(false);
+            assertFalse(publisher.waitForConfirms(1000));
+            // all the stripes are waited for, even after a nack
+            verify(channels.get(2), times(2)).waitForConfirms(anyLong());
+            try {
+                publisher.waitForConfirmsOrDie(1000);
+                fail("nack should make the wait fail");
+            } catch (IOException e) {
+                // OK
+            }
+
+            when(channels.get(0).waitForConfirms(anyLong())).thenThrow(new TimeoutException());
+            try {
+                publisher.waitForConfirms(1000);
+                fail("timeout on a stripe should be propagated");
+            } catch (TimeoutException e) {
+                // OK
+            }
+            // the stripes after the one that timed out are waited for too
+            verify(channels.get(2), times(4)).waitForConfirms(anyLong());
+
+            // 0 means no timeout
+            assertTrue(publisher.waitForConfirms(0));
+            for (Channel channel : channels) {
+                verify(channel, times(2)).waitForConfirms();
+            }
+            verify(channels.get(2), times(4)).waitForConfirms(anyLong());
+        }
+    }
+
+    @Test public void connectionsAreClosedIfOneCannotBeOpened() throws Exception {
+        Connection connection = mock(Connection.class);
+        when(connection.createChannel()).thenReturn(mock(Channel.class));
+        when(factory.newConnection(anyList(), anyString()))
+            .thenReturn(connection)
+            .thenThrow(new IOException());
+        try {
+            new StripedPublisher(factory, ADDRESSES, 2);
+            fail("publisher creation should fail");
+        } catch (IOException e) {
+            verify(connection).close();
+        }
+    }
+}
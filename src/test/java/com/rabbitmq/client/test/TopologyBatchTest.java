@@ -0,0 +1,123 @@
+// Copyright (c) 2007-Present Pivotal Software, Inc.  All rights reserved.
+//
+// This software, the RabbitMQ Java client library, is triple-licensed under the
+// Mozilla Public License 1.1 ("MPL"), the GNU General Public License version 2
+// ("GPL") and the Apache License version 2 ("ASL"). For the MPL, please see
+// LICENSE-MPL-RabbitMQ. For the GPL, please see LICENSE-GPL2.  For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.client.test;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Command;
+import com.rabbitmq.client.Method;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.TopologyBatch;
+import com.rabbitmq.client.impl.AMQCommand;
+import com.rabbitmq.client.impl.AMQImpl;
+import com.rabbitmq.client.impl.recovery.AutorecoveringChannel;
+import com.rabbitmq.client.impl.recovery.AutorecoveringConnection;
+import com.rabbitmq.client.impl.recovery.RecoveryAwareChannelN;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TopologyBatchTest {
+
+    @Test
+    public void declarationsArePipelinedAndResultsReturnedInOrder() throws Exception {
+        Channel channel = mock(Channel.class);
+        CompletableFuture<Command> queueReply = new CompletableFuture<Command>();
+        when(channel.asyncCompletableRpc(any(Method.class))).thenAnswer(invocation -> {
+            Method method = invocation.getArgument(0);
+            if (method instanceof AMQP.Exchange.Declare) {
+                return CompletableFuture.completedFuture(new AMQCommand(new AMQImpl.Exchange.DeclareOk()));
+            } else if (method instanceof AMQP.Queue.Declare) {
+                return queueReply;
+            } else {
+                // the queue declaration is answered only once all the methods have been sent
+                assertFalse(queueReply.isDone());
+                queueReply.complete(new AMQCommand(new AMQImpl.Queue.DeclareOk("amq.gen-1", 0, 0)));
+                return CompletableFuture.completedFuture(new AMQCommand(new AMQImpl.Queue.BindOk()));
+            }
+        });
+
+        TopologyBatch batch = new TopologyBatch(channel)
+            .exchangeDeclare("logs", BuiltinExchangeType.TOPIC, true, false, null)
+            .queueDeclare("", false, true, true, null)
+            .queueBind("logs.errors", "logs", "*.error", null);
+        assertThat(batch.size(), is(3));
+
+        List<TopologyBatch.Result> results = batch.execute(1000);
+        verify(channel, times(3)).asyncCompletableRpc(any(Method.class));
+        assertThat(results.size(), is(3));
+        for (TopologyBatch.Result result : results) {
+            assertTrue(result.isSuccessful());
+        }
+        assertThat(results.get(0).getReply(), instanceOf(AMQP.Exchange.DeclareOk.class));
+        assertThat(((AMQP.Queue.DeclareOk) results.get(1).getReply()).getQueue(), is("amq.gen-1"));
+        assertThat(results.get(2).getReply(), instanceOf(AMQP.Queue.BindOk.class));
+    }
+
+    @Test
+    public void failureIsReportedForFailingAndSubsequentDeclarations() throws Exception {
+        Channel channel = mock(Channel.class);
+        ShutdownSignalException closed = new ShutdownSignalException(false, false, null, channel);
+        CompletableFuture<Command> failed = new CompletableFuture<Command>();
+        failed.completeExceptionally(closed);
+        when(channel.asyncCompletableRpc(any(Method.class)))
+            .thenReturn(CompletableFuture.completedFuture(new AMQCommand(new AMQImpl.Exchange.DeclareOk())))
+            .thenReturn(failed)
+            .thenThrow(new AlreadyClosedException(closed));
+
+        List<TopologyBatch.Result> results = new TopologyBatch(channel)
+            .exchangeDeclare("logs", BuiltinExchangeType.TOPIC, true, false, null)
+            .queueDeclare("logs.errors", true, false, false, null)
+            .queueBind("logs.errors", "logs", "*.error", null)
+            .execute();
+
+        assertTrue(results.get(0).isSuccessful());
+        assertFalse(results.get(1).isSuccessful());
+        assertThat(results.get(1).getReply(), nullValue());
+        assertThat((ShutdownSignalException) results.get(1).getError(), is(closed));
+        assertThat(results.get(2).getError(), instanceOf(AlreadyClosedException.class));
+    }
+
+    @Test
+    public void recordingFailureDoesNotFailDeclaration() throws Exception {
+        RecoveryAwareChannelN delegate = mock(RecoveryAwareChannelN.class);
+        // not the reply the recording expects for a queue declaration
+        Command reply = new AMQCommand(new AMQImpl.Exchange.DeclareOk());
+        when(delegate.asyncCompletableRpc(any(Method.class))).thenReturn(CompletableFuture.completedFuture(reply));
+        Channel channel = new AutorecoveringChannel(mock(AutorecoveringConnection.class), delegate);
+
+        CompletableFuture<Command> declaration = channel.asyncCompletableRpc(
+            new AMQImpl.Queue.Declare(0, "logs.errors", false, true, false, false, false, null));
+
+        assertThat(declaration.get(), is(reply));
+    }
+
+}
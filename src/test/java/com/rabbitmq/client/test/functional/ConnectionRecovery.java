@@ -17,6 +17,7 @@ package com.rabbitmq.client.test.functional;
 
 import com.rabbitmq.client.*;
 import com.rabbitmq.client.impl.CredentialsProvider;
+import com.rabbitmq.client.impl.DefaultExceptionHandler;
 import com.rabbitmq.client.impl.NetworkConnection;
 import com.rabbitmq.client.impl.recovery.*;
 import com.rabbitmq.client.test.BrokerTestCase;
@@ -30,7 +31,11 @@ import java.lang.reflect.Field;
 import java.util.*;
 
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -689,6 +694,187 @@ public class ConnectionRecovery extends BrokerTestCase {
         }
     }
 
+    @Test public void topologyRecoveryAcrossChannelsWithExecutor() throws Exception {
+        ConnectionFactory cf = buildConnectionFactoryWithRecoveryEnabled(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        cf.setTopologyRecoveryExecutor(executor);
+        RecoverableConnection c = (RecoverableConnection) cf.newConnection();
+        try {
+            final int n = 8;
+            final CountDownLatch deliveryLatch = new CountDownLatch(n);
+            List<Channel> channels = new ArrayList<Channel>();
+            for (int i = 0; i < n; i++) {
+                Channel ch = c.createChannel();
+                String q = ch.queueDeclare("", false, true, true, null).getQueue();
+                ch.queueBind(q, "amq.fanout", "");
+                ch.basicConsume(q, true, new DefaultConsumer(ch) {
+                    @Override
+                    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                        deliveryLatch.countDown();
+                    }
+                });
+                channels.add(ch);
+            }
+            closeAndWaitForRecovery(c);
+            for (Channel ch : channels) {
+                expectChannelRecovery(ch);
+            }
+            channels.get(0).basicPublish("amq.fanout", "", null, "msg".getBytes());
+            wait(deliveryLatch);
+        } finally {
+            c.abort();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test public void recoveryPhasesAreReported() throws Exception {
+        ConnectionFactory cf = buildConnectionFactoryWithRecoveryEnabled(false);
+        cf.setTopologyRecoveryPriority(queue -> queue.startsWith("critical."));
+        RecoverableConnection c = (RecoverableConnection) cf.newConnection();
+        try {
+            Channel ch = c.createChannel();
+            String critical = ch.queueDeclare("critical." + UUID.randomUUID(), false, false, true, null).getQueue();
+            String other = ch.queueDeclare("", false, true, true, null).getQueue();
+            ch.basicConsume(critical, true, new DefaultConsumer(ch));
+            ch.basicConsume(other, true, new DefaultConsumer(ch));
+            final List<RecoveryPhase> reported = new CopyOnWriteArrayList<RecoveryPhase>();
+            final Map<RecoveryPhase, Integer> phases = new ConcurrentHashMap<RecoveryPhase, Integer>();
+            c.addRecoveryListener(new RecoveryListener() {
+                @Override
+                public void handleRecovery(Recoverable recoverable) { }
+
+                @Override
+                public void handleRecoveryStarted(Recoverable recoverable) { }
+
+                @Override
+                public void handleRecoveryPhase(Recoverable recoverable, RecoveryPhase phase, int entities, long durationInNanoseconds) {
+                    reported.add(phase);
+                    phases.put(phase, entities);
+                }
+            });
+            closeAndWaitForRecovery(c);
+            expectChannelRecovery(ch);
+            assertEquals(Arrays.asList(RecoveryPhase.values()), reported);
+            assertEquals(2, phases.get(RecoveryPhase.QUEUES).intValue());
+            assertEquals(2, phases.get(RecoveryPhase.CONSUMERS).intValue());
+            assertConsumerCount(1, critical);
+        } finally {
+            c.abort();
+        }
+    }
+
+    @Test public void entitiesSkippedAfterDeadlineAreReported() throws Exception {
+        ConnectionFactory cf = buildConnectionFactoryWithRecoveryEnabled(false);
+        cf.setTopologyRecoveryDeadline(50);
+        final List<TopologyRecoveryException> skipped = new CopyOnWriteArrayList<TopologyRecoveryException>();
+        cf.setExceptionHandler(new DefaultExceptionHandler() {
+            @Override
+            public void handleTopologyRecoveryException(Connection conn, Channel ch, TopologyRecoveryException exception) {
+                skipped.add(exception);
+            }
+        });
+        RecoverableConnection c = (RecoverableConnection) cf.newConnection();
+        try {
+            Channel ch = c.createChannel();
+            String q = ch.queueDeclare("", false, false, true, null).getQueue();
+            ch.basicConsume(q, true, new DefaultConsumer(ch));
+            // the deadline includes channel recovery, make it exceed the deadline
+            ((Recoverable) ch).addRecoveryListener(new RecoveryListener() {
+                @Override
+                public void handleRecovery(Recoverable recoverable) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                @Override
+                public void handleRecoveryStarted(Recoverable recoverable) { }
+            });
+            closeAndWaitForRecovery(c);
+            expectChannelRecovery(ch);
+            assertEquals(2, skipped.size());
+            assertTrue(skipped.get(0).getMessage().contains(q));
+        } finally {
+            c.abort();
+        }
+    }
+
+    @Test public void recoveryUsesStandbyConnection() throws Exception {
+        ConnectionFactory cf = buildConnectionFactoryWithRecoveryEnabled(false);
+        cf.setStandbyConnectionEnabled(true);
+        int connectionCount = Host.listConnections().size();
+        RecoverableConnection c = (RecoverableConnection) cf.newConnection();
+        try {
+            Channel ch = c.createChannel();
+            String q = ch.queueDeclare("", false, true, true, null).getQueue();
+            long waited = 0;
+            while (Host.listConnections().size() < connectionCount + 2 && waited < 10000) {
+                Thread.sleep(100);
+                waited += 100;
+            }
+            assertEquals(connectionCount + 2, Host.listConnections().size());
+            int localPort = ((NetworkConnection) c).getLocalPort();
+            long start = System.nanoTime();
+            closeAndWaitForRecovery(c);
+            // no recovery interval when switching to the standby connection
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < RECOVERY_INTERVAL);
+            assertFalse(localPort == ((NetworkConnection) c).getLocalPort());
+            expectChannelRecovery(ch);
+            ch.queueDeclarePassive(q);
+        } finally {
+            c.abort();
+        }
+    }
+
+    @Test public void recoveryWhenStandbyConnectionFailsAtTheSameTime() throws Exception {
+        ConnectionFactory cf = buildConnectionFactoryWithRecoveryEnabled(false);
+        cf.setStandbyConnectionEnabled(true);
+        Set<String> existing = new HashSet<String>();
+        for (Host.ConnectionInfo connectionInfo : Host.listConnections()) {
+            existing.add(connectionInfo.getPid());
+        }
+        RecoverableConnection c = (RecoverableConnection) cf.newConnection();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            Channel ch = c.createChannel();
+            List<String> pids = new ArrayList<String>();
+            long waited = 0;
+            while (pids.size() < 2 && waited < 10000) {
+                Thread.sleep(100);
+                waited += 100;
+                pids.clear();
+                for (Host.ConnectionInfo connectionInfo : Host.listConnections()) {
+                    if (!existing.contains(connectionInfo.getPid())) {
+                        pids.add(connectionInfo.getPid());
+                    }
+                }
+            }
+            assertEquals(2, pids.size());
+            // the active and the standby connections go down together, as with a node failure
+            CountDownLatch recoveryLatch = prepareForRecovery(c);
+            List<Future<?>> closings = new ArrayList<Future<?>>();
+            for (String pid : pids) {
+                closings.add(executor.submit(() -> {
+                    Host.closeConnection(pid);
+                    return null;
+                }));
+            }
+            for (Future<?> closing : closings) {
+                closing.get(10, TimeUnit.SECONDS);
+            }
+            wait(recoveryLatch);
+            expectChannelRecovery(ch);
+            // the recovered connection must recover again
+            closeAndWaitForRecovery(c);
+            expectChannelRecovery(ch);
+        } finally {
+            executor.shutdownNow();
+            c.abort();
+        }
+    }
+
     @Test public void channelRecoveryCallback() throws IOException, InterruptedException {
         final CountDownLatch latch = new CountDownLatch(2);
         final CountDownLatch startLatch = new CountDownLatch(2);
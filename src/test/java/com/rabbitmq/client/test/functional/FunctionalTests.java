@@ -16,6 +16,16 @@
 
 package com.rabbitmq.client.test.functional;
 
+import com.rabbitmq.client.impl.AckCoalescerTest;
+import com.rabbitmq.client.impl.ChannelManagerTest;
+import com.rabbitmq.client.impl.ChannelTableTest;
+import com.rabbitmq.client.impl.FrameDecodingPipelineTest;
+import com.rabbitmq.client.impl.recovery.RecordedTopologyTest;
+import com.rabbitmq.client.impl.recovery.StandbyConnectionTest;
+import com.rabbitmq.client.impl.ConsumerDispatchPoolTest;
+import com.rabbitmq.client.impl.ConsumerWorkServiceTest;
+import com.rabbitmq.client.impl.PrefetchControllerTest;
+import com.rabbitmq.client.impl.VariableArrayQueueTest;
 import com.rabbitmq.client.impl.WorkPoolTests;
 import com.rabbitmq.client.test.AbstractRMQTestSuite;
 import com.rabbitmq.client.test.Bug20004Test;
@@ -66,6 +76,16 @@ import org.junit.runners.Suite;
     InternalExchange.class,
     CcRoutes.class,
     WorkPoolTests.class,
+    VariableArrayQueueTest.class,
+    ConsumerWorkServiceTest.class,
+    ConsumerDispatchPoolTest.class,
+    PrefetchControllerTest.class,
+    AckCoalescerTest.class,
+    FrameDecodingPipelineTest.class,
+    RecordedTopologyTest.class,
+    StandbyConnectionTest.class,
+    ChannelTableTest.class,
+    ChannelManagerTest.class,
     HeadersExchangeValidation.class,
     ConsumerPriorities.class,
     Policies.class,
@@ -86,6 +86,57 @@ public class IntAllocatorTests {
             , ibs.toString());
     }
 
+    @Test public void reserveOutsideRange() throws Exception {
+        IntAllocator ibs = new IntAllocator(1, 2047);
+        assertFalse(ibs.reserve(3000));
+        assertFalse(ibs.reserve(2048));
+        assertFalse(ibs.reserve(0));
+        assertFalse(ibs.reserve(-1));
+        ibs.free(3000);
+        assertTrue(ibs.reserve(2047));
+        assertEquals("IntAllocator{allocated = [2047]}", ibs.toString());
+    }
+
+    @Test public void allocateScansFromLastAllocatedAndWraps() throws Exception {
+        IntAllocator ibs = new IntAllocator(1, 65535);
+        for (int i = 1; i <= 65535; i++) {
+            assertEquals(i, ibs.allocate());
+        }
+        assertEquals(-1, ibs.allocate());
+        ibs.free(10);
+        ibs.free(64);
+        ibs.free(30000);
+        // scan resumes after the last allocated integer, then wraps
+        assertEquals(10, ibs.allocate());
+        assertEquals(64, ibs.allocate());
+        ibs.free(5);
+        assertEquals(30000, ibs.allocate());
+        assertEquals(5, ibs.allocate());
+        assertEquals(-1, ibs.allocate());
+    }
+
+    @Test public void allocateMatchesBitSetScan() throws Exception {
+        IntAllocator ibs = new IntAllocator(LO_RANGE, HI_RANGE);
+        java.util.BitSet free = new java.util.BitSet();
+        free.set(LO_RANGE, HI_RANGE + 1);
+        int lastIndex = LO_RANGE;
+        for (int i = 0; i < TEST_ITERATIONS; ++i) {
+            if (getBool(rand)) {
+                int expected = free.nextSetBit(lastIndex);
+                if (expected < 0) expected = free.nextSetBit(0);
+                assertEquals(expected, ibs.allocate());
+                free.clear(expected);
+                lastIndex = expected;
+            } else {
+                int trial = getTrial(rand);
+                if (!free.get(trial)) {
+                    ibs.free(trial);
+                    free.set(trial);
+                }
+            }
+        }
+    }
+
     private static int extractOne(Set<Integer> set) {
         Iterator<Integer> iter = set.iterator();
         int trial = iter.next();